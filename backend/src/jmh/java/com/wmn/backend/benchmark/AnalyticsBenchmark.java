@@ -0,0 +1,101 @@
+package com.wmn.backend.benchmark;
+
+import com.wmn.backend.service.AnalyticsAggregates;
+import com.wmn.backend.service.AnalyticsAggregates.Ledger;
+import com.wmn.backend.service.AnalyticsAggregates.Trades;
+import com.wmn.backend.service.AnalyticsAggregates.Users;
+import com.wmn.backend.service.LocalAnalyticsEngine;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the in-process analytics engine against table size, without DynamoDB: synthetic ledger
+ * items are pre-split into scan segments and aggregated with the same fork/join tree the engine
+ * uses, then the report is written with the streaming XLSX writer to a discarding stream.
+ * segments=1 is the sequential baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnalyticsBenchmark {
+
+    private static final int USERS = 5000;
+    private static final int STOCKS = 200;
+
+    @Param({"10000", "100000", "500000"})
+    int tableRows;
+
+    @Param({"1", "8"})
+    int segments;
+
+    private List<List<Map<String, AttributeValue>>> ledgerSegments;
+    private List<List<Map<String, AttributeValue>>> tradeSegments;
+    private Users users;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        ledgerSegments = new ArrayList<>();
+        tradeSegments = new ArrayList<>();
+        for (int s = 0; s < segments; s++) {
+            ledgerSegments.add(new ArrayList<>());
+            tradeSegments.add(new ArrayList<>());
+        }
+        for (int i = 0; i < tableRows; i++) {
+            String day = String.format("2025-%02d-%02d 10:00:00", 1 + i % 12, 1 + i % 28);
+            ledgerSegments.get(i % segments).add(Map.of(
+                    "user_id", AttributeValue.fromS(String.format("U%03d", i % USERS)),
+                    "transaction_type", AttributeValue.fromS(i % 2 == 0 ? "DEBIT" : "CREDIT"),
+                    "amount", AttributeValue.fromN(Double.toString(10 + i % 1000 * 0.37)),
+                    "timestamp", AttributeValue.fromS(day)));
+            tradeSegments.get(i % segments).add(Map.of(
+                    "stockName", AttributeValue.fromS("STOCK" + i % STOCKS),
+                    "transactionType", AttributeValue.fromS(i % 3 == 0 ? "CREDIT" : "DEBIT"),
+                    "quantity", AttributeValue.fromN(Integer.toString(1 + i % 50)),
+                    "pricePerUnit", AttributeValue.fromN(Double.toString(100 + i % 400 * 0.25))));
+        }
+
+        users = new Users();
+        for (int u = 0; u < USERS; u++) {
+            users.add(Map.of(
+                    "user_id", AttributeValue.fromS(String.format("U%03d", u)),
+                    "username", AttributeValue.fromS("user" + u),
+                    "user_role", AttributeValue.fromS("USER"),
+                    "current_balance", AttributeValue.fromN("1000.50")));
+        }
+        pool = new ForkJoinPool(segments);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Ledger aggregateLedger() {
+        return AnalyticsAggregates.aggregate(pool, segments, Ledger::new,
+                (segment, ledger) -> ledgerSegments.get(segment).forEach(ledger::add));
+    }
+
+    @Benchmark
+    public Trades aggregateTrades() {
+        return AnalyticsAggregates.aggregate(pool, segments, Trades::new,
+                (segment, trades) -> tradeSegments.get(segment).forEach(trades::add));
+    }
+
+    @Benchmark
+    public Ledger aggregateAndWriteReport() throws IOException {
+        Ledger ledger = aggregateLedger();
+        LocalAnalyticsEngine.writeReport(ledger, aggregateTrades(), users, 20, OutputStream.nullOutputStream());
+        return ledger;
+    }
+}
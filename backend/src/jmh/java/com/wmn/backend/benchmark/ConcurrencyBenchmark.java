@@ -0,0 +1,94 @@
+package com.wmn.backend.benchmark;
+
+import com.wmn.backend.utils.ConcurrentCalls;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Request capacity and per-request latency of platform vs virtual threads, with and without
+ * fanning out the two independent lookups a transfer makes.
+ * A simulated request makes two blocking remote calls of {@code remoteLatencyMillis} each,
+ * standing in for the source and destination GetItem.
+ *
+ * capacity*: time to complete {@code concurrentRequests} simultaneous requests, i.e. a burst
+ * served by Tomcat's default 200 platform threads vs one virtual thread per request.
+ * request*: latency of a single request with sequential vs concurrent lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrencyBenchmark {
+
+    private static final int TOMCAT_DEFAULT_MAX_THREADS = 200;
+
+    @Param({"10"})
+    int remoteLatencyMillis;
+
+    @Param({"1000", "5000"})
+    int concurrentRequests;
+
+    private ExecutorService platformPool;
+
+    @Setup
+    public void setUp() {
+        platformPool = Executors.newFixedThreadPool(TOMCAT_DEFAULT_MAX_THREADS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        platformPool.shutdownNow();
+    }
+
+    @Benchmark
+    public String requestSequentialLookups() throws InterruptedException {
+        return remoteCall("source") + remoteCall("destination");
+    }
+
+    @Benchmark
+    public Pair<String, String> requestConcurrentLookups() {
+        return ConcurrentCalls.both(() -> remoteCall("source"), () -> remoteCall("destination"));
+    }
+
+    @Benchmark
+    public int capacityPlatformThreads() throws Exception {
+        return burst(platformPool, false);
+    }
+
+    @Benchmark
+    public int capacityVirtualThreads() throws Exception {
+        try (ExecutorService perRequest = Executors.newVirtualThreadPerTaskExecutor()) {
+            return burst(perRequest, false);
+        }
+    }
+
+    @Benchmark
+    public int capacityVirtualThreadsWithFanOut() throws Exception {
+        try (ExecutorService perRequest = Executors.newVirtualThreadPerTaskExecutor()) {
+            return burst(perRequest, true);
+        }
+    }
+
+    private int burst(ExecutorService executor, boolean fanOut) throws Exception {
+        List<Future<String>> requests = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            requests.add(executor.submit(() -> fanOut
+                    ? requestConcurrentLookups().getLeft()
+                    : requestSequentialLookups()));
+        }
+        int completed = 0;
+        for (Future<String> request : requests) {
+            request.get();
+            completed++;
+        }
+        return completed;
+    }
+
+    private String remoteCall(String key) throws InterruptedException {
+        Thread.sleep(remoteLatencyMillis);
+        return key;
+    }
+}
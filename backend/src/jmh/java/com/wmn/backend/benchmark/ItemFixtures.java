@@ -0,0 +1,118 @@
+package com.wmn.backend.benchmark;
+
+import com.wmn.backend.dto.PortfolioStockDto;
+import com.wmn.backend.dto.UserPortfolioResponse;
+import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.utils.Money;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic items shaped like the ones the services read from DynamoDB (same attribute names
+ * and types), and the DTOs built from them, for the mapping and serialization benchmarks.
+ */
+public final class ItemFixtures {
+
+    private static final String[] STOCKS = {"RELIANCE", "TCS", "INFY", "HDFCBANK", "ICICIBANK", "SBIN", "ITC", "LT"};
+
+    private ItemFixtures() {
+    }
+
+    public static List<Map<String, AttributeValue>> users(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        List<Map<String, AttributeValue>> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("user_id", AttributeValue.fromS(String.format("U%03d", i + 1)));
+            item.put("username", AttributeValue.fromS("user" + (1000 + i)));
+            item.put("current_balance", AttributeValue.fromN(Money.format(money(random, 100000))));
+            item.put("user_role", AttributeValue.fromS(i % 50 == 0 ? "ADMIN" : "USER"));
+            item.put("status", AttributeValue.fromS("ACTIVE"));
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static List<Map<String, AttributeValue>> transactions(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        List<Map<String, AttributeValue>> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("transaction_id", AttributeValue.fromS(Long.toString(random.nextLong(36L * 36 * 36 * 36 * 36 * 36 * 36 * 36), 36)));
+            item.put("amount", AttributeValue.fromN(Money.format(money(random, 5000))));
+            item.put("user_id", AttributeValue.fromS(String.format("U%03d", 1 + random.nextInt(500))));
+            item.put("transaction_type", AttributeValue.fromS(i % 2 == 0 ? "DEBIT" : "CREDIT"));
+            item.put("from_username", AttributeValue.fromS("user" + (1000 + random.nextInt(500))));
+            item.put("to_username", AttributeValue.fromS(i % 5 == 0 ? "Stock Market" : "user" + (1000 + random.nextInt(500))));
+            item.put("timestamp", AttributeValue.fromS(timestamp(i)));
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static List<Map<String, AttributeValue>> holdings(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        List<Map<String, AttributeValue>> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int quantity = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(200);
+            long price = money(random, 3000);
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("userId", AttributeValue.fromS("U001"));
+            item.put("stockName", AttributeValue.fromS(STOCKS[i % STOCKS.length] + (i / STOCKS.length)));
+            item.put("quantity", AttributeValue.fromN(Integer.toString(quantity)));
+            item.put("cost_basis", AttributeValue.fromN(Money.format(Money.times(price, quantity))));
+            item.put("last_price", AttributeValue.fromN(Money.format(price)));
+            item.put("last_trade_type", AttributeValue.fromS("DEBIT"));
+            item.put("last_trade_date", AttributeValue.fromS(timestamp(i)));
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static List<TransactionDto> transactionDtos(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        List<TransactionDto> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(new TransactionDto(Long.toString(random.nextLong(1L << 40), 36), String.format("U%03d", 1 + random.nextInt(500)),
+                    i % 2 == 0 ? "DEBIT" : "CREDIT", money(random, 5000), "user" + (1000 + random.nextInt(500)),
+                    "user" + (1000 + random.nextInt(500)), timestamp(i)));
+        }
+        return transactions;
+    }
+
+    public static UserPortfolioResponse portfolio(int stocks) {
+        SplittableRandom random = new SplittableRandom(stocks);
+        UserPortfolioResponse portfolio = new UserPortfolioResponse();
+        portfolio.setUserId("U001");
+        portfolio.setUsername("user1000");
+        portfolio.setUserRole("USER");
+        portfolio.setCurrentBalance(money(random, 100000));
+        List<PortfolioStockDto> positions = new ArrayList<>(stocks);
+        for (int i = 0; i < stocks; i++) {
+            PortfolioStockDto stock = new PortfolioStockDto();
+            stock.setStockName(STOCKS[i % STOCKS.length] + (i / STOCKS.length));
+            stock.setQuantity(1 + random.nextInt(200));
+            stock.setPricePerUnit(money(random, 3000));
+            stock.setAmount(stock.getQuantity() * stock.getPricePerUnit());
+            stock.setTransactionType("DEBIT");
+            stock.setTransactionDate(timestamp(i));
+            positions.add(stock);
+        }
+        portfolio.setStocks(positions);
+        return portfolio;
+    }
+
+    // minor units below max major units
+    private static long money(SplittableRandom random, int max) {
+        return random.nextInt(max * 100);
+    }
+
+    private static String timestamp(int i) {
+        return String.format("2025-%02d-%02d %02d:%02d:%02d", 1 + i % 12, 1 + i % 28, i % 24, i % 60, (i * 7) % 60);
+    }
+}
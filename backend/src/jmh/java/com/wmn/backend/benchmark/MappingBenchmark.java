@@ -0,0 +1,195 @@
+package com.wmn.backend.benchmark;
+
+import com.wmn.backend.dto.PortfolioStockDto;
+import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.repository.ItemMappers;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Item &lt;-&gt; DTO mapping on the read and write paths, per page of {@code items}: the
+ * {@link ItemMappers} used by the services against the hand-written mappers they replaced
+ * (legacy*). Run with the gc profiler (on by default in build.gradle) and compare
+ * gc.alloc.rate.norm, the bytes allocated per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+
+    @Param({"50", "500", "5000"})
+    int items;
+
+    private List<Map<String, AttributeValue>> userItems;
+    private List<Map<String, AttributeValue>> transactionItems;
+    private List<Map<String, AttributeValue>> holdingItems;
+    private List<TransactionDto> transactions;
+
+    @Setup
+    public void setUp() {
+        userItems = ItemFixtures.users(items);
+        transactionItems = ItemFixtures.transactions(items);
+        holdingItems = ItemFixtures.holdings(items);
+        transactions = ItemFixtures.transactionDtos(items);
+    }
+
+    @Benchmark
+    public void mapUserItems(Blackhole blackhole) {
+        for (Map<String, AttributeValue> item : userItems) {
+            blackhole.consume(ItemMappers.toUser(item));
+        }
+    }
+
+    @Benchmark
+    public void legacyMapUserItems(Blackhole blackhole) {
+        for (Map<String, AttributeValue> item : userItems) {
+            blackhole.consume(Legacy.mapItemToResponse(item));
+        }
+    }
+
+    @Benchmark
+    public List<TransactionDto> mapTransactionPage() {
+        return ItemMappers.toTransactions(transactionItems);
+    }
+
+    @Benchmark
+    public List<TransactionDto> legacyMapTransactionPage() {
+        return transactionItems.stream()
+                .map(Legacy::getItem)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void buildTransactionItems(Blackhole blackhole) {
+        for (TransactionDto transaction : transactions) {
+            blackhole.consume(ItemMappers.transactionItem(transaction));
+        }
+    }
+
+    @Benchmark
+    public void legacyBuildTransactionItems(Blackhole blackhole) {
+        for (TransactionDto transaction : transactions) {
+            blackhole.consume(Legacy.putItem(transaction));
+        }
+    }
+
+    @Benchmark
+    public void buildTradeItems(Blackhole blackhole) {
+        for (TransactionDto transaction : transactions) {
+            blackhole.consume(ItemMappers.tradeItem(transaction.getTransactionId(), transaction.getUserId(), "TCS",
+                    transaction.getAmount(), 10, transaction.getTransactionType(), transaction.getTimestamp()));
+        }
+    }
+
+    @Benchmark
+    public void legacyBuildTradeItems(Blackhole blackhole) {
+        for (TransactionDto transaction : transactions) {
+            blackhole.consume(Legacy.portfolioItem(transaction.getTransactionId(), transaction.getUserId(), "TCS",
+                    transaction.getAmount(), 10, transaction.getTransactionType(), transaction.getTimestamp()));
+        }
+    }
+
+    /** The per-item loop behind getUserPortfolio: map each holding and keep open positions. */
+    @Benchmark
+    public List<PortfolioStockDto> mapPortfolioHoldings() {
+        List<PortfolioStockDto> stocks = new ArrayList<>();
+        for (Map<String, AttributeValue> item : holdingItems) {
+            PortfolioStockDto stock = ItemMappers.toHolding(item);
+            if (stock.getQuantity() > 0) {
+                stocks.add(stock);
+            }
+        }
+        return stocks;
+    }
+
+    @Benchmark
+    public List<PortfolioStockDto> legacyMapPortfolioHoldings() {
+        List<PortfolioStockDto> stocks = new ArrayList<>();
+        for (Map<String, AttributeValue> item : holdingItems) {
+            PortfolioStockDto stock = Legacy.mapHolding(item);
+            if (stock.getQuantity() > 0) {
+                stocks.add(stock);
+            }
+        }
+        return stocks;
+    }
+
+    /**
+     * The service mappers as they were before ItemMappers, kept as the baseline (minus the per-record
+     * log line); amounts went through double and are converted to minor units at the end.
+     */
+    static final class Legacy {
+
+        static UserResponseDto mapItemToResponse(Map<String, AttributeValue> item) {
+            String userId = Optional.ofNullable(item.get("user_id")).map(AttributeValue::s).orElse(null);
+            String username = Optional.ofNullable(item.get("username")).map(AttributeValue::s).orElse(null);
+            Double currentBalance = Optional.ofNullable(item.get("current_balance")).map(AttributeValue::n).map(Double::valueOf).orElse(0.0);
+            String userRole = Optional.ofNullable(item.get("user_role")).map(AttributeValue::s).orElse(null);
+            return new UserResponseDto(userId, username, Math.round(currentBalance * 100), userRole);
+        }
+
+        static TransactionDto getItem(Map<String, AttributeValue> item) {
+            if (item == null || item.isEmpty()) return null;
+            TransactionDto t = new TransactionDto();
+            if (item.containsKey("transaction_id") && item.get("transaction_id").s() != null) t.setTransactionId(item.get("transaction_id").s());
+            if (item.containsKey("transaction_type") && item.get("transaction_type").s() != null) t.setTransactionType(item.get("transaction_type").s());
+            if (item.containsKey("from_username") && item.get("from_username").s() != null) t.setFromUsername(item.get("from_username").s());
+            if (item.containsKey("user_id") && item.get("user_id").s() != null) t.setUserId(item.get("user_id").s());
+            if (item.containsKey("amount") && item.get("amount").n() != null) t.setAmount(Math.round(Double.parseDouble(item.get("amount").n()) * 100));
+            if (item.containsKey("timestamp") && item.get("timestamp").s() != null) t.setTimestamp(item.get("timestamp").s());
+            if (item.containsKey("to_username") && item.get("to_username").s() != null) t.setToUsername(item.get("to_username").s());
+            return t;
+        }
+
+        static Map<String, AttributeValue> putItem(TransactionDto t) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            if (t.getTransactionId() != null) item.put("transaction_id", AttributeValue.builder().s(t.getTransactionId()).build());
+            item.put("amount", AttributeValue.builder().n(Double.toString(t.getAmount() / 100.0)).build());
+            item.put("user_id", AttributeValue.builder().s(t.getUserId()).build());
+            item.put("transaction_type", AttributeValue.builder().s(t.getTransactionType()).build());
+            item.put("from_username", AttributeValue.builder().s(t.getFromUsername()).build());
+            item.put("to_username", AttributeValue.builder().s(t.getToUsername()).build());
+            item.put("timestamp", AttributeValue.builder().s(t.getTimestamp()).build());
+            return item;
+        }
+
+        static Map<String, AttributeValue> portfolioItem(String transactionId, String userId, String stockName,
+                                                         double pricePerUnit, int quantity, String txnType, String timestamp) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("transaction_id", AttributeValue.builder().s(transactionId).build());
+            item.put("userId", AttributeValue.builder().s(userId).build());
+            item.put("stockName", AttributeValue.builder().s(stockName).build());
+            item.put("pricePerUnit", AttributeValue.builder().n(String.valueOf(pricePerUnit)).build());
+            item.put("quantity", AttributeValue.builder().n(String.valueOf(quantity)).build());
+            item.put("transactionType", AttributeValue.builder().s(txnType).build());
+            item.put("timestamp", AttributeValue.builder().s(timestamp).build());
+            return item;
+        }
+
+        static PortfolioStockDto mapHolding(Map<String, AttributeValue> item) {
+            PortfolioStockDto stock = new PortfolioStockDto();
+            stock.setStockName(stringOf(item.get("stockName")));
+            stock.setQuantity((int) Long.parseLong(numberOf(item.get("quantity"))));
+            stock.setPricePerUnit(Math.round(Double.parseDouble(numberOf(item.get("last_price"))) * 100));
+            stock.setAmount(Math.round(Double.parseDouble(numberOf(item.get("cost_basis"))) * 100));
+            stock.setTransactionType(stringOf(item.get("last_trade_type")));
+            stock.setTransactionDate(stringOf(item.get("last_trade_date")));
+            return stock;
+        }
+
+        private static String stringOf(AttributeValue value) {
+            return value == null ? null : value.s();
+        }
+
+        private static String numberOf(AttributeValue value) {
+            return value == null || value.n() == null ? "0" : value.n();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.wmn.backend.benchmark;
+
+import com.wmn.backend.utils.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order pricing and amount encoding per operation: long minor units ({@link Money}) against the
+ * BigDecimal pricing and Double round trip they replaced. Compare gc.alloc.rate.norm as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+    private final long balance = 12_345_678L;
+    private final long pricePerUnit = 245_050L;
+    private final int quantity = 17;
+    private final String stored = "123456.78";
+
+    @Benchmark
+    public long priceOrder() {
+        long amount = Money.times(pricePerUnit, quantity);
+        if (balance < amount) {
+            return balance;
+        }
+        return balance - amount;
+    }
+
+    @Benchmark
+    public BigDecimal legacyPriceOrder() {
+        BigDecimal amount = BigDecimal.valueOf(quantity).multiply(BigDecimal.valueOf(pricePerUnit / 100.0));
+        BigDecimal current = BigDecimal.valueOf(balance / 100.0);
+        if (current.compareTo(amount) < 0) {
+            return current;
+        }
+        return current.subtract(amount);
+    }
+
+    @Benchmark
+    public long parse() {
+        return Money.parse(stored);
+    }
+
+    @Benchmark
+    public double legacyParse() {
+        return Double.parseDouble(stored);
+    }
+
+    @Benchmark
+    public String format() {
+        return Money.format(balance);
+    }
+
+    @Benchmark
+    public String legacyFormat() {
+        return Double.toString(balance / 100.0);
+    }
+}
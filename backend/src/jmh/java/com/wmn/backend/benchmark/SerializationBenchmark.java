@@ -0,0 +1,40 @@
+package com.wmn.backend.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.dto.UserPortfolioResponse;
+import com.wmn.backend.model.TransactionDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Jackson serialization of the two largest response bodies: a portfolio and a page of transactions. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"50", "500", "5000"})
+    int items;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UserPortfolioResponse portfolio;
+    private List<TransactionDto> transactions;
+
+    @Setup
+    public void setUp() {
+        portfolio = ItemFixtures.portfolio(items);
+        transactions = ItemFixtures.transactionDtos(items);
+    }
+
+    @Benchmark
+    public byte[] serializePortfolio() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(portfolio);
+    }
+
+    @Benchmark
+    public byte[] serializeTransactions() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transactions);
+    }
+}
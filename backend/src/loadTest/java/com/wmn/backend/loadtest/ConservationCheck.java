@@ -0,0 +1,137 @@
+package com.wmn.backend.loadtest;
+
+import com.wmn.backend.utils.CommonUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Money must not be created or lost by concurrent transfers. Fires a burst of transfers between a
+ * few hot accounts, then reads every transfer account back (consistent reads) and checks that the
+ * total still equals the opening balances, that no account went negative and that each accepted
+ * transfer left exactly two ledger records.
+ */
+final class ConservationCheck {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+
+    ConservationCheck(DynamoDbClient dynamoDbClient, String baseUrl) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.baseUrl = baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * {@code transferAccounts} are the users only ever touched by transfers (the first accounts
+     * of the seed), {@code hotAccounts} of them take the burst.
+     */
+    Map<String, Object> run(int transferAccounts, int hotAccounts, int transfers, int concurrency, BigDecimal openingBalance) {
+        long ledgerBefore = ledgerRecords();
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < transfers; i++) {
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        int status = transfer(hotAccounts);
+                        (status < 300 ? accepted : status < 500 ? rejected : failed).incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        BigDecimal expected = openingBalance.multiply(BigDecimal.valueOf(transferAccounts));
+        BigDecimal actual = BigDecimal.ZERO;
+        List<String> negative = new ArrayList<>();
+        for (int u = 0; u < transferAccounts; u++) {
+            BigDecimal balance = balance(DataSeeder.userId(u));
+            actual = actual.add(balance);
+            if (balance.signum() < 0) {
+                negative.add(DataSeeder.userId(u));
+            }
+        }
+        long ledgerRecords = ledgerRecords() - ledgerBefore;
+
+        boolean conserved = expected.compareTo(actual) == 0;
+        boolean ledgerMatches = ledgerRecords == 2 * accepted.get();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("transfers", transfers);
+        result.put("accepted", accepted.get());
+        result.put("rejected", rejected.get());
+        result.put("failed", failed.get());
+        result.put("expectedTotal", expected.toPlainString());
+        result.put("actualTotal", actual.toPlainString());
+        result.put("negativeAccounts", negative);
+        result.put("ledgerRecords", ledgerRecords);
+        result.put("passed", conserved && negative.isEmpty() && ledgerMatches);
+        return result;
+    }
+
+    private int transfer(int hotAccounts) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(hotAccounts);
+        int destination = (source + 1 + random.nextInt(hotAccounts - 1)) % hotAccounts;
+        String body = String.format("{\"sourceUserId\":\"%s\",\"destinationUserId\":\"%s\",\"amount\":%s}",
+                DataSeeder.userId(source), DataSeeder.userId(destination), DataSeeder.cents(1 + random.nextInt(10_000)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/transaction/transfer"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private BigDecimal balance(String userId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(CommonUtils.USER)
+                .key(Map.of("user_id", AttributeValue.fromS(userId)))
+                .consistentRead(true)
+                .build());
+        AttributeValue balance = response.hasItem() ? response.item().get("current_balance") : null;
+        if (balance == null || balance.n() == null) {
+            throw new IllegalStateException("No balance for " + userId);
+        }
+        return new BigDecimal(balance.n());
+    }
+
+    private long ledgerRecords() {
+        ScanRequest request = ScanRequest.builder()
+                .tableName(CommonUtils.TRANSACTION)
+                .select(Select.COUNT)
+                .filterExpression("begins_with(user_id, :prefix)")
+                .expressionAttributeValues(Map.of(":prefix", AttributeValue.fromS(DataSeeder.USER_ID_PREFIX)))
+                .consistentRead(true)
+                .build();
+        long count = 0;
+        for (ScanResponse page : dynamoDbClient.scanPaginator(request)) {
+            count += page.count();
+        }
+        return count;
+    }
+}
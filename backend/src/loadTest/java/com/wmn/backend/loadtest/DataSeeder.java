@@ -0,0 +1,177 @@
+package com.wmn.backend.loadtest;
+
+import com.wmn.backend.utils.CommonUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the load-test data set straight to the tables, in the attribute layout the services use:
+ * users with ids LT000001.., a transaction history per user and a trade log per user with the
+ * matching holdings. Ids are prefixed so a run against a shared environment never touches real users.
+ */
+final class DataSeeder {
+
+    static final String USER_ID_PREFIX = "LT";
+    private static final String[] STOCKS = {"RELIANCE", "TCS", "INFY", "HDFCBANK", "ICICIBANK", "SBIN", "ITC", "LT"};
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BATCH_SIZE = 25;
+    private static final int PARALLEL_BATCHES = 16;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final Random random = new Random(42);
+
+    DataSeeder(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    static String userId(int index) {
+        return String.format("%s%06d", USER_ID_PREFIX, index + 1);
+    }
+
+    static String username(int index) {
+        return "loadtest" + (index + 1);
+    }
+
+    /** Returns the number of items written per table. */
+    Map<String, Integer> seed(int users, BigDecimal openingBalance, int transactionsPerUser, int tradesPerUser) {
+        List<Map<String, AttributeValue>> userItems = new ArrayList<>(users);
+        List<Map<String, AttributeValue>> transactions = new ArrayList<>();
+        List<Map<String, AttributeValue>> trades = new ArrayList<>();
+        List<Map<String, AttributeValue>> holdings = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.now().minusDays(90);
+
+        for (int u = 0; u < users; u++) {
+            String userId = userId(u);
+            Map<String, AttributeValue> user = new HashMap<>();
+            user.put("user_id", AttributeValue.fromS(userId));
+            user.put("username", AttributeValue.fromS(username(u)));
+            user.put("current_balance", AttributeValue.fromN(openingBalance.toPlainString()));
+            user.put("user_role", AttributeValue.fromS("USER"));
+            user.put("status", AttributeValue.fromS("ACTIVE"));
+            userItems.add(user);
+
+            for (int t = 0; t < transactionsPerUser; t++) {
+                boolean debit = random.nextBoolean();
+                Map<String, AttributeValue> txn = new HashMap<>();
+                txn.put("transaction_id", AttributeValue.fromS(UUID.randomUUID().toString()));
+                txn.put("amount", AttributeValue.fromN(cents(random.nextInt(500_000) + 1)));
+                txn.put("user_id", AttributeValue.fromS(userId));
+                txn.put("transaction_type", AttributeValue.fromS(debit ? "DEBIT" : "CREDIT"));
+                txn.put("from_username", AttributeValue.fromS(debit ? username(u) : username(random.nextInt(users))));
+                txn.put("to_username", AttributeValue.fromS(debit ? username(random.nextInt(users)) : username(u)));
+                txn.put("timestamp", AttributeValue.fromS(base.plusMinutes(random.nextInt(90 * 24 * 60)).format(TIMESTAMP)));
+                transactions.add(txn);
+            }
+
+            Map<String, Holding> positions = new TreeMap<>();
+            for (int t = 0; t < tradesPerUser; t++) {
+                String stock = STOCKS[random.nextInt(STOCKS.length)];
+                int quantity = 1 + random.nextInt(50);
+                String price = cents(10_000 + random.nextInt(300_000));
+                String timestamp = base.plusMinutes(t * 60L).format(TIMESTAMP);
+
+                Map<String, AttributeValue> trade = new HashMap<>();
+                trade.put("transaction_id", AttributeValue.fromS(UUID.randomUUID().toString()));
+                trade.put("userId", AttributeValue.fromS(userId));
+                trade.put("stockName", AttributeValue.fromS(stock));
+                trade.put("pricePerUnit", AttributeValue.fromN(price));
+                trade.put("quantity", AttributeValue.fromN(Integer.toString(quantity)));
+                trade.put("transactionType", AttributeValue.fromS("DEBIT"));
+                trade.put("timestamp", AttributeValue.fromS(timestamp));
+                trades.add(trade);
+
+                positions.computeIfAbsent(stock, s -> new Holding()).add(quantity, new BigDecimal(price), timestamp);
+            }
+            positions.forEach((stock, position) -> holdings.add(position.item(userId, stock)));
+        }
+
+        writeAll(CommonUtils.USER, userItems);
+        writeAll(CommonUtils.TRANSACTION, transactions);
+        writeAll(CommonUtils.PORTFOLIO, trades);
+        writeAll(CommonUtils.HOLDINGS, holdings);
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put(CommonUtils.USER, userItems.size());
+        counts.put(CommonUtils.TRANSACTION, transactions.size());
+        counts.put(CommonUtils.PORTFOLIO, trades.size());
+        counts.put(CommonUtils.HOLDINGS, holdings.size());
+        return counts;
+    }
+
+    private void writeAll(String table, List<Map<String, AttributeValue>> items) {
+        Semaphore permits = new Semaphore(PARALLEL_BATCHES);
+        List<Future<?>> batches = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                List<WriteRequest> batch = items.subList(from, Math.min(items.size(), from + BATCH_SIZE)).stream()
+                        .map(item -> WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build())
+                        .toList();
+                permits.acquireUninterruptibly();
+                batches.add(executor.submit(() -> {
+                    try {
+                        writeBatch(table, batch);
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Seeding " + table + " failed", e);
+        }
+    }
+
+    private void writeBatch(String table, List<WriteRequest> batch) throws InterruptedException {
+        Map<String, List<WriteRequest>> pending = Map.of(table, batch);
+        int attempt = 0;
+        while (!pending.isEmpty()) {
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder().requestItems(pending).build());
+            pending = response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of();
+            if (!pending.isEmpty()) {
+                Thread.sleep(Math.min(1000L, 50L << Math.min(++attempt, 5)));
+            }
+        }
+    }
+
+    static String cents(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+
+    private static final class Holding {
+        private int quantity;
+        private BigDecimal costBasis = BigDecimal.ZERO;
+        private BigDecimal lastPrice;
+        private String lastTradeDate;
+
+        void add(int quantity, BigDecimal price, String timestamp) {
+            this.quantity += quantity;
+            this.costBasis = costBasis.add(price.multiply(BigDecimal.valueOf(quantity)));
+            this.lastPrice = price;
+            this.lastTradeDate = timestamp;
+        }
+
+        Map<String, AttributeValue> item(String userId, String stockName) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("userId", AttributeValue.fromS(userId));
+            item.put("stockName", AttributeValue.fromS(stockName));
+            item.put("quantity", AttributeValue.fromN(Integer.toString(quantity)));
+            item.put("cost_basis", AttributeValue.fromN(costBasis.toPlainString()));
+            item.put("last_price", AttributeValue.fromN(lastPrice.toPlainString()));
+            item.put("last_trade_type", AttributeValue.fromS("DEBIT"));
+            item.put("last_trade_date", AttributeValue.fromS(lastTradeDate));
+            return item;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.wmn.backend.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one endpoint in microseconds, measured from the intended send time so a stalled
+ * server shows up in the tail instead of silently lowering the offered rate.
+ * Sized up front for the expected number of requests; samples beyond that are counted but dropped.
+ */
+final class LatencyRecorder {
+
+    private final String endpoint;
+    private final long[] samples;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    LatencyRecorder(String endpoint, int expectedRequests) {
+        this.endpoint = endpoint;
+        this.samples = new long[Math.max(1, expectedRequests)];
+    }
+
+    /** {@code outcome} is the HTTP status, or the exception class when no response came back. */
+    void record(long latencyNanos, String outcome, boolean success) {
+        int slot = recorded.getAndIncrement();
+        if (slot < samples.length) {
+            samples[slot] = latencyNanos / 1000;
+        } else {
+            dropped.incrementAndGet();
+        }
+        if (!success) {
+            errors.increment();
+        }
+        outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+    }
+
+    /** Call once the driver has stopped; {@code seconds} is the measured window. */
+    Map<String, Object> summary(double seconds) {
+        int count = Math.min(recorded.get(), samples.length);
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("endpoint", endpoint);
+        summary.put("requests", recorded.get());
+        summary.put("errors", errors.sum());
+        summary.put("throughputPerSecond", Math.round(recorded.get() / seconds * 10) / 10.0);
+        summary.put("p50Millis", millis(percentile(sorted, 0.50)));
+        summary.put("p99Millis", millis(percentile(sorted, 0.99)));
+        summary.put("p999Millis", millis(percentile(sorted, 0.999)));
+        summary.put("maxMillis", millis(count == 0 ? 0 : sorted[count - 1]));
+        Map<String, Long> byOutcome = new LinkedHashMap<>();
+        outcomes.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> byOutcome.put(e.getKey(), e.getValue().sum()));
+        summary.put("outcomes", byOutcome);
+        if (dropped.get() > 0) {
+            summary.put("droppedSamples", dropped.get());
+        }
+        return summary;
+    }
+
+    // nearest-rank percentile
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+}
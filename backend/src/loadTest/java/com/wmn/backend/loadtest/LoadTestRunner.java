@@ -0,0 +1,208 @@
+package com.wmn.backend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.BackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Release load test: boots the backend against a local DynamoDB stand-in (DynamoDB Local in a
+ * container, or any endpoint given with loadtest.dynamodb.endpoint), seeds users, ledger history
+ * and trades, drives open-loop traffic at fixed rates against transfer, invest, portfolio and
+ * history, then checks that concurrent transfers conserved money.
+ *
+ * Run with ./gradlew loadTest; every loadtest.* Gradle property (-Ploadtest.rate.transfer=300)
+ * overrides the defaults below, and loadtest.app.&lt;property&gt; is passed to the application
+ * (e.g. -Ploadtest.app.dynamodb.client-mode=async). With loadtest.base-url the already running
+ * instance at that URL is targeted instead of booting one; loadtest.dynamodb.endpoint must then
+ * point at the tables it uses. Results are printed and written as JSON to loadtest.results-file;
+ * the exit code is non-zero when the conservation check fails or an endpoint exceeds
+ * loadtest.max-error-rate.
+ */
+public final class LoadTestRunner {
+
+    private static final String APP_PREFIX = "loadtest.app.";
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = intProperty("loadtest.users", 1000);
+        int hotAccounts = intProperty("loadtest.conservation.hot-accounts", 10);
+        int transferAccounts = users / 2;
+        if (hotAccounts < 2 || transferAccounts < hotAccounts) {
+            throw new IllegalArgumentException("Need loadtest.conservation.hot-accounts >= 2 and loadtest.users >= 2 * hot-accounts");
+        }
+        BigDecimal openingBalance = new BigDecimal(System.getProperty("loadtest.opening-balance", "1000000.00"));
+
+        GenericContainer<?> dynamoDbLocal = null;
+        ConfigurableApplicationContext app = null;
+        boolean passed;
+        try {
+            String endpoint = System.getProperty("loadtest.dynamodb.endpoint");
+            if (endpoint == null || endpoint.isBlank()) {
+                dynamoDbLocal = new GenericContainer<>(DockerImageName.parse(System.getProperty("loadtest.dynamodb.image", "amazon/dynamodb-local:2.5.2")))
+                        .withExposedPorts(8000)
+                        .withCommand("-jar", "DynamoDBLocal.jar", "-inMemory", "-sharedDb");
+                dynamoDbLocal.start();
+                endpoint = "http://" + dynamoDbLocal.getHost() + ":" + dynamoDbLocal.getMappedPort(8000);
+                // DynamoDB Local accepts any credentials
+                System.setProperty("aws.accessKeyId", System.getProperty("aws.accessKeyId", "loadtest"));
+                System.setProperty("aws.secretAccessKey", System.getProperty("aws.secretAccessKey", "loadtest"));
+            }
+
+            String baseUrl = System.getProperty("loadtest.base-url");
+            if (baseUrl == null || baseUrl.isBlank()) {
+                app = new SpringApplicationBuilder(BackendApplication.class).run(applicationArguments(endpoint));
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+
+            try (DynamoDbClient dynamoDbClient = DynamoDbClient.builder()
+                    .endpointOverride(URI.create(endpoint))
+                    .region(Region.of(System.getProperty("aws.region", "ap-south-2")))
+                    .build()) {
+                passed = run(dynamoDbClient, baseUrl, users, transferAccounts, hotAccounts, openingBalance);
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            if (dynamoDbLocal != null) {
+                dynamoDbLocal.stop();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(DynamoDbClient dynamoDbClient, String baseUrl, int users, int transferAccounts,
+                               int hotAccounts, BigDecimal openingBalance) throws Exception {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("baseUrl", baseUrl);
+
+        long seedStarted = System.currentTimeMillis();
+        Map<String, Integer> seeded = new DataSeeder(dynamoDbClient).seed(users, openingBalance,
+                intProperty("loadtest.transactions-per-user", 20), intProperty("loadtest.trades-per-user", 5));
+        log("Seeded %s in %d ms", seeded, System.currentTimeMillis() - seedStarted);
+        report.put("seeded", seeded);
+
+        Duration warmup = Duration.ofSeconds(intProperty("loadtest.warmup-seconds", 10));
+        Duration duration = Duration.ofSeconds(intProperty("loadtest.duration-seconds", 60));
+        List<OpenLoopDriver.Target> targets = targets(baseUrl, users, transferAccounts);
+        log("Driving %s for %ds after a %ds warmup", targets.stream().map(t -> t.name() + "@" + t.ratePerSecond() + "/s").toList(),
+                duration.toSeconds(), warmup.toSeconds());
+        List<Map<String, Object>> endpoints = new OpenLoopDriver(warmup, duration, Duration.ofSeconds(30)).run(targets);
+        report.put("endpoints", endpoints);
+
+        Map<String, Object> conservation = new ConservationCheck(dynamoDbClient, baseUrl).run(transferAccounts, hotAccounts,
+                intProperty("loadtest.conservation.transfers", 2000), intProperty("loadtest.conservation.concurrency", 100), openingBalance);
+        report.put("conservation", conservation);
+
+        double maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+        List<String> tooManyErrors = endpoints.stream()
+                .filter(e -> ((Number) e.get("requests")).longValue() > 0
+                        && ((Number) e.get("errors")).doubleValue() / ((Number) e.get("requests")).doubleValue() > maxErrorRate)
+                .map(e -> (String) e.get("endpoint"))
+                .toList();
+        boolean passed = Boolean.TRUE.equals(conservation.get("passed")) && tooManyErrors.isEmpty();
+        report.put("endpointsOverErrorRate", tooManyErrors);
+        report.put("passed", passed);
+
+        print(endpoints, conservation, tooManyErrors);
+        File results = new File(System.getProperty("loadtest.results-file", "build/results/loadtest/results.json"));
+        results.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(results, report);
+        log("Results written to %s", results.getAbsolutePath());
+        return passed;
+    }
+
+    /*
+     * Transfers stay within the first half of the users and invests within the second half: the
+     * invest path sets the balance outright, so mixing the two on one account would make the
+     * conservation totals meaningless.
+     */
+    private static List<OpenLoopDriver.Target> targets(String baseUrl, int users, int transferAccounts) {
+        return List.of(
+                new OpenLoopDriver.Target("POST /transaction/transfer", rate("transfer", 100), () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int source = random.nextInt(transferAccounts);
+                    int destination = (source + 1 + random.nextInt(transferAccounts - 1)) % transferAccounts;
+                    return post(baseUrl + "/transaction/transfer", String.format(
+                            "{\"sourceUserId\":\"%s\",\"destinationUserId\":\"%s\",\"amount\":%s}",
+                            DataSeeder.userId(source), DataSeeder.userId(destination), DataSeeder.cents(1 + random.nextInt(1000))));
+                }),
+                new OpenLoopDriver.Target("POST /stocks/invest", rate("invest", 50), () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    return post(baseUrl + "/stocks/invest", String.format(
+                            "{\"userId\":\"%s\",\"stockName\":\"LOADTEST%d\",\"quantity\":%d,\"pricePerUnit\":%s,\"transactionType\":\"BUY\"}",
+                            DataSeeder.userId(transferAccounts + random.nextInt(users - transferAccounts)), random.nextInt(20),
+                            1 + random.nextInt(5), DataSeeder.cents(1000 + random.nextInt(50_000))));
+                }),
+                new OpenLoopDriver.Target("GET /users/portfolio/{userId}", rate("portfolio", 200), () ->
+                        get(baseUrl + "/users/portfolio/" + DataSeeder.userId(ThreadLocalRandom.current().nextInt(users)))),
+                new OpenLoopDriver.Target("GET /transaction/history", rate("history", 200), () ->
+                        get(baseUrl + "/transaction/history?limit=50&userId=" + DataSeeder.userId(ThreadLocalRandom.current().nextInt(users)))));
+    }
+
+    // command line arguments, so they take precedence over application.properties
+    private static String[] applicationArguments(String endpoint) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("aws.client.dynamodb.endpoint", endpoint);
+        properties.put("dynamodb.init-tables", "true");
+        properties.put("ledger.write-behind.enabled", "false");
+        properties.put("analytics.report-cache.enabled", "false");
+        properties.put("logging.level.com.wmn.backend", "WARN");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PREFIX))
+                .forEach(name -> properties.put(name.substring(APP_PREFIX.length()), System.getProperty(name)));
+        return properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new);
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static void print(List<Map<String, Object>> endpoints, Map<String, Object> conservation, List<String> tooManyErrors) {
+        System.out.printf("%n%-32s %9s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map<String, Object> e : endpoints) {
+            System.out.printf("%-32s %9s %8s %9s %9s %9s %9s %9s%n", e.get("endpoint"), e.get("requests"), e.get("errors"),
+                    e.get("throughputPerSecond"), e.get("p50Millis"), e.get("p99Millis"), e.get("p999Millis"), e.get("maxMillis"));
+        }
+        System.out.printf("%nConservation: %s%n", conservation);
+        if (!tooManyErrors.isEmpty()) {
+            System.out.printf("Error rate above loadtest.max-error-rate: %s%n", tooManyErrors);
+        }
+    }
+
+    private static double rate(String endpoint, double defaultRate) {
+        return Double.parseDouble(System.getProperty("loadtest.rate." + endpoint, Double.toString(defaultRate)));
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty(name, Integer.toString(defaultValue)));
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.printf("[loadtest] " + format + "%n", args);
+    }
+}
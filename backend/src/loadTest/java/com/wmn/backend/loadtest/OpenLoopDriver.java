@@ -0,0 +1,114 @@
+package com.wmn.backend.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop traffic: every target sends at its fixed rate on its own schedule, whether or not
+ * earlier requests have completed, each request on its own virtual thread. Latency is taken from
+ * the scheduled send time, so queueing inside the client or the server is part of the result.
+ * Requests scheduled during the warmup are sent but not recorded.
+ */
+final class OpenLoopDriver {
+
+    /** One endpoint under load; {@code request} builds the next request (bodies are randomised per call). */
+    record Target(String name, double ratePerSecond, Supplier<HttpRequest> request) {
+    }
+
+    private final HttpClient httpClient;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration requestTimeout;
+
+    OpenLoopDriver(Duration warmup, Duration duration, Duration requestTimeout) {
+        this.warmup = warmup;
+        this.duration = duration;
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /** Runs all targets side by side and returns one summary per target, in the given order. */
+    List<Map<String, Object>> run(List<Target> targets) throws InterruptedException {
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        List<Thread> schedulers = new ArrayList<>();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Target target : targets) {
+                if (target.ratePerSecond() <= 0) {
+                    continue;
+                }
+                LatencyRecorder recorder = new LatencyRecorder(target.name(),
+                        (int) Math.ceil(target.ratePerSecond() * duration.toSeconds() * 1.1) + 16);
+                recorders.add(recorder);
+                schedulers.add(Thread.ofPlatform().name("load-" + target.name()).start(
+                        () -> schedule(target, recorder, requests, start, measureFrom, end)));
+            }
+            for (Thread scheduler : schedulers) {
+                scheduler.join();
+            }
+            // closing the executor waits for the requests still in flight
+        }
+
+        double seconds = duration.toMillis() / 1000.0;
+        return recorders.stream().map(recorder -> recorder.summary(seconds)).toList();
+    }
+
+    private void schedule(Target target, LatencyRecorder recorder, ExecutorService requests,
+                          long start, long measureFrom, long end) {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / target.ratePerSecond();
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended >= end) {
+                return;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended >= measureFrom;
+            requests.execute(() -> send(target, measured ? recorder : null, intended));
+        }
+    }
+
+    private void send(Target target, LatencyRecorder recorder, long intended) {
+        String outcome;
+        boolean success;
+        try {
+            HttpRequest request = target.request().get();
+            HttpResponse<Void> response = httpClient.send(withTimeout(request), HttpResponse.BodyHandlers.discarding());
+            outcome = Integer.toString(response.statusCode());
+            success = response.statusCode() < 400;
+        } catch (IOException e) {
+            outcome = e.getClass().getSimpleName();
+            success = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (recorder != null) {
+            recorder.record(System.nanoTime() - intended, outcome, success);
+        }
+    }
+
+    private HttpRequest withTimeout(HttpRequest request) {
+        return HttpRequest.newBuilder(request, (name, value) -> true).timeout(requestTimeout).build();
+    }
+}
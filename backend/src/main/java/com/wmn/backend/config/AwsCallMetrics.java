@@ -0,0 +1,176 @@
+package com.wmn.backend.config;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.interceptor.*;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SDK interceptor registered on every AWS client. For each call it records
+ * <ul>
+ *   <li>aws.client.calls: latency timer (with histogram) per service, operation, resource, caller and outcome</li>
+ *   <li>aws.client.retries: attempts beyond the first</li>
+ *   <li>aws.dynamodb.consumed.capacity: capacity units per table (ReturnConsumedCapacity is switched on)</li>
+ *   <li>aws.dynamodb.items.scanned / aws.dynamodb.items.returned: per Query and Scan page</li>
+ * </ul>
+ * resource is the table, bucket, Glue job or Lambda function; caller comes from {@link ServiceCallAspect}.
+ */
+@Component
+public class AwsCallMetrics implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START = new ExecutionAttribute<>("MetricsStartNanos");
+    private static final ExecutionAttribute<String> CALLER = new ExecutionAttribute<>("MetricsCaller");
+    private static final ExecutionAttribute<AtomicInteger> ATTEMPTS = new ExecutionAttribute<>("MetricsAttempts");
+
+    private final MeterRegistry meterRegistry;
+
+    public AwsCallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attributes) {
+        attributes.putAttribute(START, System.nanoTime());
+        // captured here: async clients complete the call on another thread
+        attributes.putAttribute(CALLER, ServiceCallAspect.currentCaller());
+        attributes.putAttribute(ATTEMPTS, new AtomicInteger());
+    }
+
+    @Override
+    public SdkRequest modifyRequest(Context.ModifyRequest context, ExecutionAttributes attributes) {
+        SdkRequest request = context.request();
+        if (request instanceof GetItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof PutItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof UpdateItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof DeleteItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof QueryRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof ScanRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof BatchWriteItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        if (request instanceof TransactWriteItemsRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build();
+        }
+        return request;
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes attributes) {
+        AtomicInteger attempts = attributes.getAttribute(ATTEMPTS);
+        if (attempts != null) {
+            attempts.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes attributes) {
+        Tags tags = tags(context.request(), attributes);
+        record(tags, attributes, "success");
+        recordDynamoDb(context.response(), tags);
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attributes) {
+        record(tags(context.request(), attributes), attributes, context.exception().getClass().getSimpleName());
+    }
+
+    private void record(Tags tags, ExecutionAttributes attributes, String outcome) {
+        Long start = attributes.getAttribute(START);
+        if (start != null) {
+            Timer.builder("aws.client.calls")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        AtomicInteger attempts = attributes.getAttribute(ATTEMPTS);
+        if (attempts != null && attempts.get() > 1) {
+            meterRegistry.counter("aws.client.retries", tags).increment(attempts.get() - 1);
+        }
+    }
+
+    private void recordDynamoDb(SdkResponse response, Tags tags) {
+        if (response instanceof QueryResponse r) {
+            items(tags, r.scannedCount(), r.count());
+            capacity(tags, r.consumedCapacity());
+        } else if (response instanceof ScanResponse r) {
+            items(tags, r.scannedCount(), r.count());
+            capacity(tags, r.consumedCapacity());
+        } else if (response instanceof GetItemResponse r) {
+            capacity(tags, r.consumedCapacity());
+        } else if (response instanceof PutItemResponse r) {
+            capacity(tags, r.consumedCapacity());
+        } else if (response instanceof UpdateItemResponse r) {
+            capacity(tags, r.consumedCapacity());
+        } else if (response instanceof DeleteItemResponse r) {
+            capacity(tags, r.consumedCapacity());
+        } else if (response instanceof BatchWriteItemResponse r && r.hasConsumedCapacity()) {
+            r.consumedCapacity().forEach(c -> capacity(tags, c));
+        } else if (response instanceof TransactWriteItemsResponse r && r.hasConsumedCapacity()) {
+            r.consumedCapacity().forEach(c -> capacity(tags, c));
+        }
+    }
+
+    private void items(Tags tags, Integer scanned, Integer returned) {
+        if (scanned != null) {
+            meterRegistry.summary("aws.dynamodb.items.scanned", tags).record(scanned);
+        }
+        if (returned != null) {
+            meterRegistry.summary("aws.dynamodb.items.returned", tags).record(returned);
+        }
+    }
+
+    private void capacity(Tags tags, ConsumedCapacity consumed) {
+        if (consumed == null || consumed.capacityUnits() == null) {
+            return;
+        }
+        // batch and transaction calls report one entry per table
+        Tags tableTags = consumed.tableName() == null ? tags : tags.and("resource", consumed.tableName());
+        meterRegistry.summary("aws.dynamodb.consumed.capacity", tableTags).record(consumed.capacityUnits());
+    }
+
+    private Tags tags(SdkRequest request, ExecutionAttributes attributes) {
+        String caller = attributes.getAttribute(CALLER);
+        return Tags.of(
+                "service", String.valueOf(attributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME)),
+                "operation", String.valueOf(attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME)),
+                "resource", resource(request),
+                "caller", caller == null ? "none" : caller);
+    }
+
+    private String resource(SdkRequest request) {
+        if (request instanceof BatchWriteItemRequest r && r.hasRequestItems()) {
+            return String.join(",", new TreeSet<>(r.requestItems().keySet()));
+        }
+        if (request instanceof TransactWriteItemsRequest) {
+            return "transaction";
+        }
+        for (String field : List.of("TableName", "Bucket", "JobName", "FunctionName")) {
+            var value = request.getValueForField(field, String.class);
+            if (value.isPresent()) {
+                return value.get();
+            }
+        }
+        return "-";
+    }
+}
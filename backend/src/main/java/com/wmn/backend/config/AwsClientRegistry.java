@@ -0,0 +1,135 @@
+package com.wmn.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsSyncClientBuilder;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.glue.GlueClient;
+import software.amazon.awssdk.services.lambda.LambdaClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * The single place AWS clients are built. Each client is a singleton with its own pooled,
+ * keep-alive HTTP client so connections, credentials and threads are reused across requests.
+ *
+ * Every client reads aws.client.&lt;name&gt;.* (max-connections, connection-timeout-ms,
+ * socket-timeout-ms, acquire-timeout-ms, api-call-timeout-ms, endpoint) with the defaults
+ * below; &lt;name&gt;.endpoint (e.g. dynamodb.endpoint) is also honoured for local stand-ins.
+ * Pool usage is published to {@link AwsPoolMetrics} and every call is measured by {@link AwsCallMetrics}.
+ */
+@Configuration
+public class AwsClientRegistry {
+
+    private final Environment environment;
+    private final AwsPoolMetrics poolMetrics;
+    private final AwsCallMetrics callMetrics;
+    private final Region region;
+
+    public AwsClientRegistry(Environment environment, AwsPoolMetrics poolMetrics, AwsCallMetrics callMetrics,
+                             @Value("${aws.region:ap-south-2}") String region) {
+        this.environment = environment;
+        this.poolMetrics = poolMetrics;
+        this.callMetrics = callMetrics;
+        this.region = Region.of(region);
+    }
+
+    @Bean
+    public DynamoDbClient dynamoDbClient() {
+        return configure(DynamoDbClient.builder(), settings("dynamodb", 200, 1000, 5000, 10000)).build();
+    }
+
+    // only created when dynamodb.client-mode=async; requests are multiplexed over Netty event loops
+    @Bean
+    @ConditionalOnProperty(name = "dynamodb.client-mode", havingValue = "async")
+    public DynamoDbAsyncClient dynamoDbAsyncClient(@Value("${dynamodb.async.max-concurrency:500}") int maxConcurrency) {
+        ClientSettings settings = settings("dynamodb", maxConcurrency, 1000, 5000, 10000);
+        var builder = DynamoDbAsyncClient.builder()
+                .region(region)
+                .overrideConfiguration(overrides("dynamodb-async", settings))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(settings.maxConnections())
+                        .connectionTimeout(settings.connectionTimeout())
+                        .readTimeout(settings.socketTimeout())
+                        .connectionAcquisitionTimeout(settings.acquireTimeout())
+                        .connectionMaxIdleTime(Duration.ofSeconds(60))
+                        .tcpKeepAlive(true));
+        if (settings.endpoint() != null) {
+            builder.endpointOverride(settings.endpoint());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public S3Client s3Client() {
+        ClientSettings settings = settings("s3", 50, 2000, 30000, 0);
+        boolean pathStyle = environment.getProperty("aws.client.s3.path-style", Boolean.class, settings.endpoint() != null);
+        return configure(S3Client.builder(), settings).forcePathStyle(pathStyle).build();
+    }
+
+    @Bean
+    public GlueClient glueClient() {
+        return configure(GlueClient.builder(), settings("glue", 10, 2000, 10000, 30000)).build();
+    }
+
+    @Bean
+    public LambdaClient lambdaClient() {
+        return configure(LambdaClient.builder(), settings("lambda", 10, 2000, 60000, 0)).build();
+    }
+
+    private <B extends AwsClientBuilder<B, ?> & AwsSyncClientBuilder<B, ?>> B configure(B builder, ClientSettings settings) {
+        builder.region(region)
+                .overrideConfiguration(overrides(settings.name(), settings))
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(settings.maxConnections())
+                        .connectionTimeout(settings.connectionTimeout())
+                        .socketTimeout(settings.socketTimeout())
+                        .connectionAcquisitionTimeout(settings.acquireTimeout())
+                        .connectionMaxIdleTime(Duration.ofSeconds(60))
+                        .useIdleConnectionReaper(true)
+                        .tcpKeepAlive(true));
+        if (settings.endpoint() != null) {
+            builder.endpointOverride(settings.endpoint());
+        }
+        return builder;
+    }
+
+    private ClientOverrideConfiguration overrides(String metricsName, ClientSettings settings) {
+        ClientOverrideConfiguration.Builder overrides = ClientOverrideConfiguration.builder()
+                .addMetricPublisher(poolMetrics.publisher(metricsName))
+                .addExecutionInterceptor(callMetrics);
+        if (!settings.apiCallTimeout().isZero()) {
+            overrides.apiCallTimeout(settings.apiCallTimeout());
+        }
+        return overrides.build();
+    }
+
+    private ClientSettings settings(String name, int maxConnections, long connectionTimeoutMs,
+                                    long socketTimeoutMs, long apiCallTimeoutMs) {
+        String prefix = "aws.client." + name + ".";
+        String endpoint = environment.getProperty(prefix + "endpoint", environment.getProperty(name + ".endpoint", ""));
+        return new ClientSettings(
+                name,
+                endpoint.isBlank() ? null : URI.create(endpoint.trim()),
+                environment.getProperty(prefix + "max-connections", Integer.class, maxConnections),
+                Duration.ofMillis(environment.getProperty(prefix + "connection-timeout-ms", Long.class, connectionTimeoutMs)),
+                Duration.ofMillis(environment.getProperty(prefix + "socket-timeout-ms", Long.class, socketTimeoutMs)),
+                Duration.ofMillis(environment.getProperty(prefix + "acquire-timeout-ms", Long.class, 2000L)),
+                Duration.ofMillis(environment.getProperty(prefix + "api-call-timeout-ms", Long.class, apiCallTimeoutMs)));
+    }
+
+    private record ClientSettings(String name, URI endpoint, int maxConnections, Duration connectionTimeout,
+                                  Duration socketTimeout, Duration acquireTimeout, Duration apiCallTimeout) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.wmn.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool usage of the shared AWS clients, fed by the SDK's per-call HTTP metrics.
+ * A call is counted as saturated when it had to wait for a pooled connection.
+ */
+@Component
+public class AwsPoolMetrics {
+
+    private final Map<String, PoolStats> pools = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public AwsPoolMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Publisher to attach to the client registered as {@code client}; also exported as aws.client.pool gauges. */
+    public MetricPublisher publisher(String client) {
+        PoolStats stats = pools.computeIfAbsent(client, k -> {
+            PoolStats created = new PoolStats();
+            created.snapshot().keySet().forEach(stat -> Gauge.builder("aws.client.pool", created, p -> p.snapshot().get(stat))
+                    .tag("client", client)
+                    .tag("stat", stat)
+                    .register(meterRegistry));
+            return created;
+        });
+        return new MetricPublisher() {
+            @Override
+            public void publish(MetricCollection metrics) {
+                stats.record(metrics);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public Map<String, Map<String, Long>> stats() {
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        pools.forEach((client, stats) -> result.put(client, stats.snapshot()));
+        return result;
+    }
+
+    private static final class PoolStats {
+        private final AtomicInteger maxConnections = new AtomicInteger();
+        private final AtomicInteger leased = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger peakLeased = new AtomicInteger();
+        private final AtomicInteger peakPending = new AtomicInteger();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong saturatedCalls = new AtomicLong();
+
+        void record(MetricCollection metrics) {
+            calls.incrementAndGet();
+            // HTTP metrics sit on the attempt-level children of the call collection
+            int callPending = 0;
+            for (MetricCollection attempt : metrics.children()) {
+                for (MetricCollection http : attempt.children()) {
+                    last(http.metricValues(HttpMetric.MAX_CONCURRENCY), maxConnections);
+                    int l = last(http.metricValues(HttpMetric.LEASED_CONCURRENCY), leased);
+                    int p = last(http.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES), pending);
+                    peakLeased.accumulateAndGet(l, Math::max);
+                    peakPending.accumulateAndGet(p, Math::max);
+                    callPending = Math.max(callPending, p);
+                }
+            }
+            if (callPending > 0) {
+                saturatedCalls.incrementAndGet();
+            }
+        }
+
+        private int last(List<Integer> values, AtomicInteger target) {
+            if (values.isEmpty()) {
+                return 0;
+            }
+            int value = values.get(values.size() - 1);
+            target.set(value);
+            return value;
+        }
+
+        Map<String, Long> snapshot() {
+            Map<String, Long> snapshot = new LinkedHashMap<>();
+            snapshot.put("maxConnections", (long) maxConnections.get());
+            snapshot.put("leased", (long) leased.get());
+            snapshot.put("pending", (long) pending.get());
+            snapshot.put("peakLeased", (long) peakLeased.get());
+            snapshot.put("peakPending", (long) peakPending.get());
+            snapshot.put("calls", calls.get());
+            snapshot.put("saturatedCalls", saturatedCalls.get());
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.wmn.backend.config;
+
+import com.wmn.backend.utils.CommonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.*;
+
+/**
+ * Creates the tables and secondary indexes the services rely on when they are missing.
+ * Existing tables are migrated by adding any missing GSI; data is never touched.
+ * Enable with dynamodb.init-tables=true (fresh or local environments).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "dynamodb.init-tables", havingValue = "true")
+// before other startup runners (HoldingsBackfill) that read the tables
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DynamoDBTableInitializer implements ApplicationRunner {
+
+    private final DynamoDbClient dynamoDbClient;
+
+    public DynamoDBTableInitializer(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ensureTable(CommonUtils.USER, "user_id", null,
+                List.of(new IndexSpec(CommonUtils.USERNAME_INDEX, "username", null)));
+        ensureTable(CommonUtils.SEQUENCE, "counter_name", null, List.of());
+        ensureTable(CommonUtils.TRANSACTION, "transaction_id", null,
+                List.of(new IndexSpec(CommonUtils.TRANSACTION_USER_INDEX, "user_id", "timestamp")));
+        ensureTable(CommonUtils.PORTFOLIO, "transaction_id", null, List.of());
+        ensureTable(CommonUtils.HOLDINGS, "userId", "stockName", List.of());
+        ensureTable(CommonUtils.IDEMPOTENCY, "idempotency_key", null, List.of());
+        ensureTimeToLive(CommonUtils.IDEMPOTENCY, "expires_at");
+    }
+
+    // lets DynamoDB drop expired idempotency records; expired ones are also ignored when read
+    private void ensureTimeToLive(String tableName, String attribute) {
+        try {
+            TimeToLiveDescription ttl = dynamoDbClient.describeTimeToLive(DescribeTimeToLiveRequest.builder()
+                    .tableName(tableName).build()).timeToLiveDescription();
+            if (ttl != null && (ttl.timeToLiveStatus() == TimeToLiveStatus.ENABLED
+                    || ttl.timeToLiveStatus() == TimeToLiveStatus.ENABLING)) {
+                return;
+            }
+            dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                    .tableName(tableName)
+                    .timeToLiveSpecification(TimeToLiveSpecification.builder().attributeName(attribute).enabled(true).build())
+                    .build());
+            log.info("Enabled TTL on {}.{}", tableName, attribute);
+        } catch (DynamoDbException e) {
+            log.warn("Could not enable TTL on table {}: {}", tableName, e.getMessage());
+        }
+    }
+
+    private void ensureTable(String tableName, String hashKey, String rangeKey, List<IndexSpec> indexes) {
+        TableDescription table;
+        try {
+            table = dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build()).table();
+        } catch (ResourceNotFoundException e) {
+            createTable(tableName, hashKey, rangeKey, indexes);
+            return;
+        }
+
+        Set<String> existing = new HashSet<>();
+        if (table.hasGlobalSecondaryIndexes()) {
+            table.globalSecondaryIndexes().forEach(gsi -> existing.add(gsi.indexName()));
+        }
+
+        for (IndexSpec index : indexes) {
+            if (existing.contains(index.name())) {
+                continue;
+            }
+            try {
+                dynamoDbClient.updateTable(UpdateTableRequest.builder()
+                        .tableName(tableName)
+                        .attributeDefinitions(attributeDefinitions(null, null, List.of(index)))
+                        .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder()
+                                .create(CreateGlobalSecondaryIndexAction.builder()
+                                        .indexName(index.name())
+                                        .keySchema(keySchema(index.hashKey(), index.rangeKey()))
+                                        .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
+                                        .build())
+                                .build())
+                        .build());
+                log.info("Creating index {} on table {}", index.name(), tableName);
+            } catch (DynamoDbException e) {
+                // only one index can be backfilled at a time, the rest are picked up on the next start
+                log.warn("Could not create index {} on table {}: {}", index.name(), tableName, e.getMessage());
+            }
+        }
+    }
+
+    private void createTable(String tableName, String hashKey, String rangeKey, List<IndexSpec> indexes) {
+        CreateTableRequest.Builder request = CreateTableRequest.builder()
+                .tableName(tableName)
+                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .keySchema(keySchema(hashKey, rangeKey))
+                .attributeDefinitions(attributeDefinitions(hashKey, rangeKey, indexes));
+
+        if (!indexes.isEmpty()) {
+            request.globalSecondaryIndexes(indexes.stream()
+                    .map(index -> GlobalSecondaryIndex.builder()
+                            .indexName(index.name())
+                            .keySchema(keySchema(index.hashKey(), index.rangeKey()))
+                            .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
+                            .build())
+                    .toList());
+        }
+
+        dynamoDbClient.createTable(request.build());
+        dynamoDbClient.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+        log.info("Created table {}", tableName);
+    }
+
+    private List<KeySchemaElement> keySchema(String hashKey, String rangeKey) {
+        List<KeySchemaElement> keys = new ArrayList<>();
+        keys.add(KeySchemaElement.builder().attributeName(hashKey).keyType(KeyType.HASH).build());
+        if (rangeKey != null) {
+            keys.add(KeySchemaElement.builder().attributeName(rangeKey).keyType(KeyType.RANGE).build());
+        }
+        return keys;
+    }
+
+    // every key attribute in this schema is a string
+    private List<AttributeDefinition> attributeDefinitions(String hashKey, String rangeKey, List<IndexSpec> indexes) {
+        Set<String> names = new LinkedHashSet<>();
+        if (hashKey != null) names.add(hashKey);
+        if (rangeKey != null) names.add(rangeKey);
+        for (IndexSpec index : indexes) {
+            names.add(index.hashKey());
+            if (index.rangeKey() != null) names.add(index.rangeKey());
+        }
+        return names.stream()
+                .map(name -> AttributeDefinition.builder().attributeName(name).attributeType(ScalarAttributeType.S).build())
+                .toList();
+    }
+
+    private record IndexSpec(String name, String hashKey, String rangeKey) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.wmn.backend.config;
+
+import com.wmn.backend.service.HoldingsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+
+/**
+ * Fills Portfolio_Holding from the trade log on the first start after the holdings table was
+ * introduced, so existing users keep their portfolio; skipped as soon as the table holds any row.
+ * The rebuild can overwrite holdings of trades placed while it runs, so deploy this while trading
+ * is quiet (the instance only reports ready once it is done). Disable with
+ * holdings.backfill-on-startup=false.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "holdings.backfill-on-startup", havingValue = "true")
+public class HoldingsBackfill implements ApplicationRunner {
+
+    private final HoldingsService holdingsService;
+
+    public HoldingsBackfill(HoldingsService holdingsService) {
+        this.holdingsService = holdingsService;
+    }
+
+    // a failure leaves the table empty, so the next start tries again
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            if (holdingsService.hasHoldings()) {
+                return;
+            }
+            log.info("Holdings table is empty, rebuilding it from the trade log");
+            holdingsService.rebuild();
+        } catch (SdkException e) {
+            log.error("Could not backfill the holdings table, portfolios stay empty until it is rebuilt: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.wmn.backend.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers which service method is running on the current thread (e.g. "UserService.getUserByUserId")
+ * so AWS calls made underneath it can be tagged with their caller. Nested service calls report the
+ * innermost method; calls made outside any service method report "none".
+ */
+@Aspect
+@Component
+public class ServiceCallAspect {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    public static String currentCaller() {
+        String caller = CURRENT.get();
+        return caller == null ? "none" : caller;
+    }
+
+    @Around("execution(public * com.wmn.backend.service.*Service.*(..))")
+    public Object track(ProceedingJoinPoint joinPoint) throws Throwable {
+        String previous = CURRENT.get();
+        CURRENT.set(joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package com.wmn.backend.controller;
 
+import com.wmn.backend.service.AnalyticsJobMonitor;
 import com.wmn.backend.service.AnalyticsService;
-import com.wmn.backend.service.LambdaService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
-import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/analytics")
@@ -18,48 +22,111 @@ import java.util.Map;
 @Tag(name = "Analytics Management", description = "APIs for running analytics and downloading reports")
 public class AnalyticsController {
 
-    private final LambdaService lambdaService;
+    private final AnalyticsJobMonitor analyticsJobMonitor;
     private final AnalyticsService analyticsService;
 
-    public AnalyticsController(LambdaService lambdaService, AnalyticsService analyticsService){
-        this.lambdaService = lambdaService;
+    public AnalyticsController(AnalyticsJobMonitor analyticsJobMonitor, AnalyticsService analyticsService){
+        this.analyticsJobMonitor = analyticsJobMonitor;
         this.analyticsService = analyticsService;
     }
 
     @GetMapping("/start")
-    public ResponseEntity<String> triggerAnalysis() {
+    public ResponseEntity<String> triggerAnalysis(@RequestParam(required = false) String engine) {
 
-        String response = lambdaService.invokeLambda();
+        String response = analyticsJobMonitor.start(engine);
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/status")
     public ResponseEntity<Map<String, String>> checkStatus(@RequestParam String jobId) {
-        String status = analyticsService.getJobStatus(jobId);
+        String status = analyticsJobMonitor.status(jobId);
         Map<String, String> response = new HashMap<>();
         response.put("jobId", jobId);
         response.put("status", status);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping(path = "/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatus(@RequestParam String jobId) {
+        return analyticsJobMonitor.subscribe(jobId);
+    }
+
     @GetMapping("/download")
-    public ResponseEntity<byte[]> downloadAnalyticsReport() throws IOException {
+    public ResponseEntity<StreamingResponseBody> downloadAnalyticsReport(
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
         log.info("Download started.");
-        byte[] fileData = analyticsService.downloadAnalyticsReport();
-
-        if (fileData != null && fileData.length > 0) {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDisposition(ContentDisposition.parse("attachment; filename=Analytical_Report.xlsx"));
-            headers.setContentLength(fileData.length);
+        Optional<S3Object> report = analyticsService.findLatestReport();
 
-            log.info("Download Ended.");
-            return new ResponseEntity<>(fileData, headers, HttpStatus.OK);
-        } else {
+        if (report.isEmpty()) {
             log.info("No file found, returning 404.");
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .header("X-Error-Message", "No file found in the specified S3 folder")
                     .build();
         }
+
+        S3Object latest = report.get();
+        long size = latest.size();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(latest.eTag());
+        headers.setLastModified(latest.lastModified());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (ifNoneMatch != null && etagMatches(ifNoneMatch, latest.eTag(), true)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(ContentDisposition.parse("attachment; filename=Analytical_Report.xlsx"));
+
+        // a range is only honoured while the client's partial copy is still the current report
+        HttpRange requested = singleRange(range);
+        if (requested != null && (ifRange == null || etagMatches(ifRange, latest.eTag(), false))) {
+            long start;
+            long end;
+            try {
+                start = requested.getRangeStart(size);
+                end = requested.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            headers.setContentLength(end - start + 1);
+            StreamingResponseBody body = out -> analyticsService.streamReport(latest, start, end, out);
+            return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+        }
+
+        headers.setContentLength(size);
+        StreamingResponseBody body = out -> analyticsService.streamReport(latest, null, null, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    // malformed or multi-part ranges are ignored and the whole report is sent
+    private HttpRange singleRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean etagMatches(String header, String etag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (weak && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
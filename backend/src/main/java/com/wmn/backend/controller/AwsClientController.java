@@ -0,0 +1,26 @@
+package com.wmn.backend.controller;
+
+import com.wmn.backend.config.AwsPoolMetrics;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/aws/clients")
+@CrossOrigin
+@Tag(name = "AWS Clients", description = "Connection pool usage of the shared AWS clients")
+public class AwsClientController {
+
+    private final AwsPoolMetrics poolMetrics;
+
+    public AwsClientController(AwsPoolMetrics poolMetrics) {
+        this.poolMetrics = poolMetrics;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Map<String, Long>>> poolStats() {
+        return ResponseEntity.ok(poolMetrics.stats());
+    }
+}
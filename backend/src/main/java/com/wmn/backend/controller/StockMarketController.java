@@ -1,8 +1,11 @@
 package com.wmn.backend.controller;
 
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.wmn.backend.model.InvestInStocks;
 import com.wmn.backend.model.InvestInStocksResponse;
+import com.wmn.backend.service.AsyncStockMarketService;
+import com.wmn.backend.service.IdempotencyService;
 import com.wmn.backend.service.StockMarketService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -11,6 +14,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import software.amazon.awssdk.annotations.NotNull;
 
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/stocks")
 @CrossOrigin
@@ -18,22 +25,45 @@ import software.amazon.awssdk.annotations.NotNull;
 @Tag(name = "Stock Management", description = "APIs for managing stocks")
 public class StockMarketController {
 
+    private static final String INVEST_SCOPE = "invest";
+
     StockMarketService stockMarketService;
+    IdempotencyService idempotencyService;
+    // present when dynamodb.client-mode=async
+    AsyncStockMarketService asyncStockMarketService;
 
-    public StockMarketController(StockMarketService stockMarketService) {
+    public StockMarketController(StockMarketService stockMarketService, IdempotencyService idempotencyService,
+                                 Optional<AsyncStockMarketService> asyncStockMarketService) {
         this.stockMarketService = stockMarketService;
+        this.idempotencyService = idempotencyService;
+        this.asyncStockMarketService = asyncStockMarketService.orElse(null);
     }
 
     @PostMapping("/invest")
-    public ResponseEntity<InvestInStocksResponse> investInStocks(@NotNull @Valid @RequestBody InvestInStocks invest) {
+    public CompletableFuture<ResponseEntity<InvestInStocksResponse>> investInStocks(
+            @NotNull @Valid @RequestBody InvestInStocks invest,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.info("Investing in stocks...");
-        return ResponseEntity.ok(stockMarketService.investInStocks(invest));
+        String requestToken = IdempotencyService.requestToken(INVEST_SCOPE, idempotencyKey);
+        return idempotencyService.execute(idempotencyKey, INVEST_SCOPE, invest, new TypeReference<InvestInStocksResponse>() {},
+                        () -> asyncStockMarketService != null
+                                ? asyncStockMarketService.investInStocks(invest, requestToken)
+                                : CompletableFuture.completedFuture(stockMarketService.investInStocks(invest, requestToken)))
+                .thenApply(outcome -> ResponseEntity.ok()
+                        .header(IdempotencyService.REPLAYED_HEADER, Boolean.toString(outcome.replayed()))
+                        .body(outcome.body()));
+    }
+
+    @PostMapping("/holdings/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildHoldings() {
+        log.info("Rebuilding portfolio holdings from the trade log...");
+        return ResponseEntity.ok(stockMarketService.rebuildHoldings());
     }
 
     /*
     @PostMapping("/sell")
     public ResponseEntity<InvestInStocksResponse> sellStock(@RequestBody InvestInStocks invest) {
-        InvestInStocksResponse response = stockMarketService.investInStocks(invest);
+        InvestInStocksResponse response = stockMarketService.investInStocks(invest, null);
         return ResponseEntity.ok(response);
     }
     */
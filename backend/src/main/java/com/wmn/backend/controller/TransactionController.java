@@ -1,35 +1,144 @@
 
 package com.wmn.backend.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.dto.BatchTransferResponse;
+import com.wmn.backend.dto.TransactionPage;
 import com.wmn.backend.dto.TransferDto;
 import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.service.AsyncTransactionService;
+import com.wmn.backend.service.BatchTransferService;
+import com.wmn.backend.service.IdempotencyService;
 import com.wmn.backend.service.TransactionService;
+import com.wmn.backend.utils.Money;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/transaction")
 @CrossOrigin
 @Tag(name = "Transaction Management", description = "APIs for money transfer and transaction history")
 public class TransactionController {
+    private static final String TRANSFER_SCOPE = "transfer";
+    private static final String CSV_HEADER = "transactionId,userId,transactionType,amount,fromUsername,toUsername,timestamp\n";
+
     private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyService idempotencyService;
+    private final BatchTransferService batchTransferService;
+    // present when dynamodb.client-mode=async
+    private final AsyncTransactionService asyncTransactionService;
 
-    public TransactionController(TransactionService transactionService){
+    public TransactionController(TransactionService transactionService, ObjectMapper objectMapper,
+                                 IdempotencyService idempotencyService, BatchTransferService batchTransferService,
+                                 Optional<AsyncTransactionService> asyncTransactionService){
         this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+        this.idempotencyService = idempotencyService;
+        this.batchTransferService = batchTransferService;
+        this.asyncTransactionService = asyncTransactionService.orElse(null);
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<TransactionDto>> listTransactions(@RequestParam String userId) {
-        List<TransactionDto> list = transactionService.listTransactions(userId);
-        return ResponseEntity.ok(list);
+    public CompletableFuture<ResponseEntity<TransactionPage>> listTransactions(@RequestParam String userId,
+                                                                               @RequestParam(defaultValue = "50") int limit,
+                                                                               @RequestParam(required = false) String cursor) {
+        CompletableFuture<TransactionPage> page = asyncTransactionService != null
+                ? asyncTransactionService.listTransactions(userId, limit, cursor)
+                : CompletableFuture.completedFuture(transactionService.listTransactions(userId, limit, cursor));
+        return page.thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@RequestParam String userId,
+                                                                    @RequestParam(defaultValue = "ndjson") String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("format must be ndjson or csv");
+        }
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (csv) {
+                writer.write(CSV_HEADER);
+            }
+            transactionService.exportTransactions(userId, page -> {
+                try {
+                    for (TransactionDto t : page) {
+                        writer.write(csv ? toCsvRow(t) : objectMapper.writeValueAsString(t));
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(csv ? new MediaType("text", "csv") : new MediaType("application", "x-ndjson"));
+        headers.setContentDisposition(ContentDisposition.parse("attachment; filename=transactions-" + userId + (csv ? ".csv" : ".ndjson")));
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
     @PostMapping("/transfer")
-    public ResponseEntity<?> createTransaction(@RequestBody TransferDto txn) {
-        return ResponseEntity.ok(transactionService.createTransaction(txn));
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> createTransaction(
+            @RequestBody TransferDto txn,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        String requestToken = IdempotencyService.requestToken(TRANSFER_SCOPE, idempotencyKey);
+        return idempotencyService.execute(idempotencyKey, TRANSFER_SCOPE, txn, new TypeReference<Map<String, Object>>() {},
+                        () -> asyncTransactionService != null
+                                ? asyncTransactionService.createTransaction(txn, requestToken)
+                                : CompletableFuture.completedFuture(transactionService.createTransaction(txn, requestToken)))
+                .thenApply(outcome -> ResponseEntity.ok()
+                        .header(IdempotencyService.REPLAYED_HEADER, Boolean.toString(outcome.replayed()))
+                        .body(outcome.body()));
+    }
+
+    /** Applies many transfers at once; see BatchTransferService for grouping and ordering. */
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<BatchTransferResponse> createTransactions(@RequestBody List<TransferDto> transfers) {
+        return ResponseEntity.ok(batchTransferService.transfer(transfers));
+    }
+
+    @GetMapping("/write-behind/stats")
+    public ResponseEntity<Map<String, Object>> writeBehindStats() {
+        return ResponseEntity.ok(transactionService.getWriteBehindStats());
+    }
+
+    @GetMapping("/sequencer/stats")
+    public ResponseEntity<Map<String, Object>> sequencerStats() {
+        return ResponseEntity.ok(transactionService.getSequencerStats());
+    }
+
+    private String toCsvRow(TransactionDto t) {
+        return String.join(",",
+                csvField(t.getTransactionId()),
+                csvField(t.getUserId()),
+                csvField(t.getTransactionType()),
+                Money.format(t.getAmount()),
+                csvField(t.getFromUsername()),
+                csvField(t.getToUsername()),
+                csvField(t.getTimestamp()));
+    }
+
+    private String csvField(String value) {
+        if (value == null) return "";
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
     }
 
 }
@@ -1,19 +1,31 @@
 package com.wmn.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wmn.backend.dto.UpdateUserDto;
 import com.wmn.backend.dto.UserDto;
 import com.wmn.backend.dto.UserPortfolioResponse;
 import com.wmn.backend.dto.UserResponseDto;
 import com.wmn.backend.model.InvestInStocksResponse;
+import com.wmn.backend.service.AsyncStockMarketService;
+import com.wmn.backend.service.AsyncUserService;
 import com.wmn.backend.service.StockMarketService;
+import com.wmn.backend.service.UserOnboardingService;
 import com.wmn.backend.service.UserService;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.*;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/users")
@@ -23,11 +35,23 @@ public class UserController {
 
     private final UserService userService;
     private final StockMarketService stockMarketService;
+    private final UserOnboardingService userOnboardingService;
+    private final ObjectMapper objectMapper;
+    // present when dynamodb.client-mode=async
+    private final AsyncUserService asyncUserService;
+    private final AsyncStockMarketService asyncStockMarketService;
 
-    public UserController(UserService userService, StockMarketService stockMarketService) {
+    public UserController(UserService userService, StockMarketService stockMarketService,
+                          UserOnboardingService userOnboardingService, ObjectMapper objectMapper,
+                          Optional<AsyncUserService> asyncUserService,
+                          Optional<AsyncStockMarketService> asyncStockMarketService) {
 
         this.userService = userService;
         this.stockMarketService = stockMarketService;
+        this.userOnboardingService = userOnboardingService;
+        this.objectMapper = objectMapper;
+        this.asyncUserService = asyncUserService.orElse(null);
+        this.asyncStockMarketService = asyncStockMarketService.orElse(null);
     }
 
 
@@ -43,9 +67,43 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Creates users from a CSV (text/csv, with a header line) or NDJSON body of UserDto rows and
+     * streams back one NDJSON result line per row as it is written.
+     */
+    @PostMapping(value = "/bulk", consumes = {"text/csv", "application/x-ndjson"}, produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> bulkCreate(HttpServletRequest request) throws IOException {
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(new MediaType("text", "csv"));
+        // reads the CSV header now, so a bad one is a 400 rather than a truncated 200
+        UserOnboardingService.Upload upload = userOnboardingService.open(request.getInputStream(), csv);
+
+        StreamingResponseBody results = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            userOnboardingService.onboard(upload, result -> {
+                try {
+                    writer.write(objectMapper.writeValueAsString(result));
+                    writer.write('\n');
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(new MediaType("application", "x-ndjson")).body(results);
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Long>> cacheStats() {
+        return ResponseEntity.ok(userService.getCacheStats());
+    }
+
     @GetMapping("/{username}")
-    public ResponseEntity<UserResponseDto> read(@PathVariable String username) {
-        return userService.getUser(username).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    public CompletableFuture<ResponseEntity<UserResponseDto>> read(@PathVariable String username) {
+        CompletableFuture<Optional<UserResponseDto>> user = asyncUserService != null
+                ? asyncUserService.getUser(username)
+                : CompletableFuture.completedFuture(userService.getUser(username));
+        return user.thenApply(u -> u.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build()));
     }
 
     @PutMapping("/{userId}")
@@ -72,7 +130,9 @@ public class UserController {
         return ResponseEntity.ok(userService.listUsers(status));
     }
     @GetMapping("/portfolio/{userId}")
-    public UserPortfolioResponse getPortfolio(@PathVariable String userId) {
-        return stockMarketService.getUserPortfolio(userId);
+    public CompletableFuture<UserPortfolioResponse> getPortfolio(@PathVariable String userId) {
+        return asyncStockMarketService != null
+                ? asyncStockMarketService.getUserPortfolio(userId)
+                : CompletableFuture.completedFuture(stockMarketService.getUserPortfolio(userId));
     }
 }
\ No newline at end of file
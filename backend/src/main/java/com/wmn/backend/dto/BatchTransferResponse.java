@@ -0,0 +1,22 @@
+package com.wmn.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResponse {
+    private List<BatchTransferResult> results;
+    private int applied;
+    private int rejected;
+    private int failed;
+    // independent account groups, and TransactWriteItems calls made for them
+    private int groups;
+    private int writes;
+    private long elapsedMillis;
+    private double transfersPerSecond;
+}
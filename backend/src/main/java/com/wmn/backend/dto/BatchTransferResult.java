@@ -0,0 +1,20 @@
+package com.wmn.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one transfer of a batch, at the transfer's position in the request. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTransferResult {
+    private int index;
+    // APPLIED, REJECTED (validation, unknown user, insufficient balance) or FAILED (retryable)
+    private String status;
+    private String sourceUserId;
+    private String destinationUserId;
+    private String error;
+}
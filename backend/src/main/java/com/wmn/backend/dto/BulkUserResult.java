@@ -0,0 +1,33 @@
+package com.wmn.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one row of a bulk onboarding request, streamed back as one NDJSON line. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUserResult {
+    // 1-based data row of the upload (header not counted)
+    private long row;
+    // CREATED, INVALID or FAILED
+    private String status;
+    private String userId;
+    private String username;
+    private String error;
+
+    public static BulkUserResult created(long row, String userId, String username) {
+        return new BulkUserResult(row, "CREATED", userId, username, null);
+    }
+
+    public static BulkUserResult invalid(long row, String error) {
+        return new BulkUserResult(row, "INVALID", null, null, error);
+    }
+
+    public static BulkUserResult failed(long row, String error) {
+        return new BulkUserResult(row, "FAILED", null, null, error);
+    }
+}
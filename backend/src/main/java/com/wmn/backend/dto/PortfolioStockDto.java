@@ -1,13 +1,23 @@
 package com.wmn.backend.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import lombok.Data;
 
 @Data
 public class PortfolioStockDto {
     private String stockName;
-    private double pricePerUnit;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long pricePerUnit;
     private int quantity;
-    private double amount;
+    // net cost basis in minor units: buy amounts minus sell amounts of the position. Before the
+    // holdings read model this was the sum of all trade amounts, buys and sells alike.
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long amount;
     private String transactionType;
     private String transactionDate;
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.wmn.backend.dto;
+
+import com.wmn.backend.model.TransactionDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPage {
+    private List<TransactionDto> transactions;
+    // opaque token for the next page, null on the last page
+    private String nextCursor;
+}
@@ -1,9 +1,16 @@
 package com.wmn.backend.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
+
 public class TransferDto {
     private String sourceUserId;
     private String destinationUserId;
-    private Double amount;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private Long amount;
 
     public String getSourceUserId() {
         return sourceUserId;
@@ -21,11 +28,11 @@ public class TransferDto {
         this.destinationUserId = destinationUserId;
     }
 
-    public Double getAmount() {
+    public Long getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(Long amount) {
         this.amount = amount;
     }
 }
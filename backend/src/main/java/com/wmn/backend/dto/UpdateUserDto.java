@@ -1,25 +1,31 @@
 
 package com.wmn.backend.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Pattern;
 
 public class UpdateUserDto {
 
 
+    // minor units
     @DecimalMin(value = "0.0", inclusive = true, message = "current_balance must be >= 0")
-    private Double currentBalance;
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private Long currentBalance;
 
     @Pattern(regexp = "ADMIN|USER", message = "user_role must be ADMIN or USER")
     private String userRole;
 
     private String username;
 
-    public Double getCurrentBalance() {
+    public Long getCurrentBalance() {
         return currentBalance;
     }
 
-    public void setCurrentBalance(Double currentBalance) {
+    public void setCurrentBalance(Long currentBalance) {
         this.currentBalance = currentBalance;
     }
 
@@ -1,5 +1,8 @@
 package com.wmn.backend.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import jakarta.validation.constraints.*;
 
 public class UserDto {
@@ -10,8 +13,11 @@ public class UserDto {
     private String username;
 
 
+    // minor units
     @DecimalMin(value = "0.0", inclusive = true, message = "current_balance must be >= 0")
-    private Double currentBalance;
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private Long currentBalance;
 
 
     @Pattern(regexp = "ADMIN|USER", message = "user_role must be ADMIN or USER")
@@ -21,8 +27,8 @@ public class UserDto {
     public void setUserId(String userId) { this.userId = userId; }
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
-    public Double getCurrentBalance() { return currentBalance; }
-    public void setCurrentBalance(Double currentBalance) { this.currentBalance = currentBalance; }
+    public Long getCurrentBalance() { return currentBalance; }
+    public void setCurrentBalance(Long currentBalance) { this.currentBalance = currentBalance; }
     public String getUserRole() { return userRole; }
     public void setUserRole(String userRole) { this.userRole = userRole; }
 }
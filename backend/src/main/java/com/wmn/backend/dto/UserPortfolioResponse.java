@@ -1,5 +1,8 @@
 package com.wmn.backend.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import lombok.Data;
 import java.util.List;
 
@@ -8,6 +11,9 @@ public class UserPortfolioResponse {
     private String userId;
     private String username;
     private String userRole;
-    private double currentBalance;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long currentBalance;
     private List<PortfolioStockDto> stocks;
 }
\ No newline at end of file
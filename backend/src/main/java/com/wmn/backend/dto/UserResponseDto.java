@@ -1,15 +1,22 @@
 
 package com.wmn.backend.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
+
 public class UserResponseDto {
     private String userId;
     private String username;
-    private Double currentBalance;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long currentBalance;
     private String userRole;
 
     public UserResponseDto() {}
 
-    public UserResponseDto(String userId, String username, Double currentBalance, String userRole) {
+    public UserResponseDto(String userId, String username, long currentBalance, String userRole) {
         this.userId = userId;
         this.username = username;
         this.currentBalance = currentBalance;
@@ -20,8 +27,8 @@ public class UserResponseDto {
     public void setUserId(String userId) { this.userId = userId; }
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
-    public Double getCurrentBalance() { return currentBalance; }
-    public void setCurrentBalance(Double currentBalance) { this.currentBalance = currentBalance; }
+    public long getCurrentBalance() { return currentBalance; }
+    public void setCurrentBalance(long currentBalance) { this.currentBalance = currentBalance; }
     public String getUserRole() { return userRole; }
     public void setUserRole(String userRole) { this.userRole = userRole; }
 }
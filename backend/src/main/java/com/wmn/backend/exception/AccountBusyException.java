@@ -0,0 +1,12 @@
+package com.wmn.backend.exception;
+
+/**
+ * An account had too many operations queued ahead of this one to start it within the
+ * sequencer's wait limit. Mapped to 503 with Retry-After so callers back off.
+ */
+public class AccountBusyException extends RuntimeException {
+
+    public AccountBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.wmn.backend.exception;
+
+/**
+ * As many analytics runs are being watched as this instance allows pollers for. Mapped to 503
+ * with Retry-After so clients try again once a watched run has finished.
+ */
+public class AnalyticsBusyException extends RuntimeException {
+
+    public AnalyticsBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.wmn.backend.exception;
+
+/**
+ * A request reused an Idempotency-Key whose first request is still being processed, or whose
+ * operation was already applied with different parameters. Mapped to 409 Conflict.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,8 @@
 package com.wmn.backend.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,7 +16,10 @@ public class InvestInStocks {
     private String userId;
     private String stockName;
     private Integer quantity;
-    private Double pricePerUnit;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private Long pricePerUnit;
     private String transactionType;
     private String transactionDate;
 }
@@ -1,6 +1,9 @@
 package com.wmn.backend.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,10 +16,17 @@ public class InvestInStocksResponse {
     private String userId;
     private String transactionId;
     private String stockName;
-    private Double pricePerUnit;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long pricePerUnit;
     private Integer quantity;
-    private Double amount;
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long amount;
     private String transactionType;
     private String transactionDate;
-    private Double currentBalance;
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long currentBalance;
 }
@@ -1,5 +1,8 @@
 package com.wmn.backend.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.wmn.backend.utils.Money;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.*;
@@ -14,7 +17,10 @@ public class TransactionDto {
     @NotBlank
     @Pattern(regexp = "DEBIT|CREDIT", message = "transactionType must be DEBIT OR CREDIT")
     private String transactionType;
-    private Double amount;
+    // minor units
+    @JsonSerialize(using = Money.JsonWriter.class)
+    @JsonDeserialize(using = Money.JsonReader.class)
+    private long amount;
     private String fromUsername;
     private String toUsername;
     private String timestamp;
@@ -0,0 +1,139 @@
+package com.wmn.backend.repository;
+
+import com.wmn.backend.dto.PortfolioStockDto;
+import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.utils.Money;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item &lt;-&gt; object mapping for the user, transaction, trade and holdings tables.
+ * The attribute names below are the table schemas; every mapper does one map lookup per
+ * attribute and writes into a map sized for the item, so mapping a page of thousands of items
+ * allocates little more than the resulting objects.
+ */
+public final class ItemMappers {
+
+    // User
+    public static final String USER_ID = "user_id";
+    public static final String USERNAME = "username";
+    public static final String CURRENT_BALANCE = "current_balance";
+    public static final String USER_ROLE = "user_role";
+    public static final String STATUS = "status";
+
+    // Transaction (ledger)
+    public static final String TRANSACTION_ID = "transaction_id";
+    public static final String AMOUNT = "amount";
+    public static final String TRANSACTION_TYPE = "transaction_type";
+    public static final String FROM_USERNAME = "from_username";
+    public static final String TO_USERNAME = "to_username";
+    public static final String TIMESTAMP = "timestamp";
+
+    // Portfolio_Transaction (trade log) and Holdings, keyed by userId/stockName
+    public static final String TRADE_USER_ID = "userId";
+    public static final String STOCK_NAME = "stockName";
+    public static final String PRICE_PER_UNIT = "pricePerUnit";
+    public static final String QUANTITY = "quantity";
+    public static final String TRADE_TYPE = "transactionType";
+    public static final String COST_BASIS = "cost_basis";
+    public static final String LAST_PRICE = "last_price";
+    public static final String LAST_TRADE_TYPE = "last_trade_type";
+    public static final String LAST_TRADE_DATE = "last_trade_date";
+
+    private ItemMappers() {
+    }
+
+    /** Amounts are read with {@link Money#parse}, so items written from doubles map exactly; missing ones map to 0. */
+    public static UserResponseDto toUser(Map<String, AttributeValue> item) {
+        return new UserResponseDto(
+                s(item, USER_ID),
+                s(item, USERNAME),
+                Money.parseOrZero(n(item, CURRENT_BALANCE)),
+                s(item, USER_ROLE));
+    }
+
+    /** Returns null for a missing or empty item. */
+    public static TransactionDto toTransaction(Map<String, AttributeValue> item) {
+        if (item == null || item.isEmpty()) {
+            return null;
+        }
+        return new TransactionDto(
+                s(item, TRANSACTION_ID),
+                s(item, USER_ID),
+                s(item, TRANSACTION_TYPE),
+                Money.parseOrZero(n(item, AMOUNT)),
+                s(item, FROM_USERNAME),
+                s(item, TO_USERNAME),
+                s(item, TIMESTAMP));
+    }
+
+    public static List<TransactionDto> toTransactions(List<Map<String, AttributeValue>> items) {
+        List<TransactionDto> transactions = new ArrayList<>(items.size());
+        for (Map<String, AttributeValue> item : items) {
+            TransactionDto transaction = toTransaction(item);
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+        return transactions;
+    }
+
+    public static Map<String, AttributeValue> transactionItem(TransactionDto t) {
+        Map<String, AttributeValue> item = HashMap.newHashMap(7);
+        if (t.getTransactionId() != null) {
+            item.put(TRANSACTION_ID, AttributeValue.fromS(t.getTransactionId()));
+        }
+        item.put(AMOUNT, AttributeValue.fromN(Money.format(t.getAmount())));
+        item.put(USER_ID, AttributeValue.fromS(t.getUserId()));
+        item.put(TRANSACTION_TYPE, AttributeValue.fromS(t.getTransactionType()));
+        item.put(FROM_USERNAME, AttributeValue.fromS(t.getFromUsername()));
+        item.put(TO_USERNAME, AttributeValue.fromS(t.getToUsername()));
+        item.put(TIMESTAMP, AttributeValue.fromS(t.getTimestamp()));
+        return item;
+    }
+
+    public static Map<String, AttributeValue> tradeItem(String transactionId, String userId, String stockName,
+                                                        long pricePerUnit, int quantity, String txnType, String timestamp) {
+        Map<String, AttributeValue> item = HashMap.newHashMap(7);
+        item.put(TRANSACTION_ID, AttributeValue.fromS(transactionId));
+        item.put(TRADE_USER_ID, AttributeValue.fromS(userId));
+        item.put(STOCK_NAME, AttributeValue.fromS(stockName));
+        item.put(PRICE_PER_UNIT, AttributeValue.fromN(Money.format(pricePerUnit)));
+        item.put(QUANTITY, AttributeValue.fromN(Integer.toString(quantity)));
+        item.put(TRADE_TYPE, AttributeValue.fromS(txnType));
+        item.put(TIMESTAMP, AttributeValue.fromS(timestamp));
+        return item;
+    }
+
+    /**
+     * A holdings row as a portfolio position; amount is the net cost basis (buys minus sells).
+     * Missing numbers map to 0.
+     */
+    public static PortfolioStockDto toHolding(Map<String, AttributeValue> item) {
+        String quantity = n(item, QUANTITY);
+
+        PortfolioStockDto stock = new PortfolioStockDto();
+        stock.setStockName(s(item, STOCK_NAME));
+        stock.setQuantity(quantity == null ? 0 : (int) Long.parseLong(quantity));
+        stock.setPricePerUnit(Money.parseOrZero(n(item, LAST_PRICE)));
+        stock.setAmount(Money.parseOrZero(n(item, COST_BASIS)));
+        stock.setTransactionType(s(item, LAST_TRADE_TYPE));
+        stock.setTransactionDate(s(item, LAST_TRADE_DATE));
+        return stock;
+    }
+
+    private static String s(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null ? null : value.s();
+    }
+
+    private static String n(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null ? null : value.n();
+    }
+}
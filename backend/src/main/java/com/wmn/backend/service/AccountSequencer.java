@@ -0,0 +1,166 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.exception.AccountBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs balance-changing operations of one account one at a time within this instance, so
+ * concurrent transfers and orders on a hot account queue up here instead of contending in
+ * DynamoDB (transaction conflicts and the retries they cause). This is an optimisation only:
+ * every balance write is a conditional server-side adjustment, which is what keeps accounts
+ * correct across instances. Accounts map onto a fixed set of stripes; operations on accounts of
+ * different stripes run fully in parallel.
+ * Stripes are fair semaphores rather than locks so a permit can be released by whichever thread
+ * completes an async operation. A caller waits at most max-wait-ms for its turn and then gets
+ * {@link AccountBusyException}, so one hot account cannot pile up unbounded waiting requests.
+ * Queued operations are not coalesced: each transfer or order carries its own ledger records and
+ * its own funds check, and merging them would let one overdrawn order fail the others in its
+ * write. Netting of many transfers into one write is done by the batch transfer endpoint.
+ */
+@Component
+public class AccountSequencer {
+
+    private final Semaphore[] stripes;
+    private final long maxWaitNanos;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter contended;
+    private final Counter timeouts;
+
+    public AccountSequencer(@Value("${account.sequencer.stripes:1024}") int stripeCount,
+                            @Value("${account.sequencer.max-wait-ms:2000}") long maxWaitMillis,
+                            MeterRegistry meterRegistry) {
+        // power of two so the stripe is a mask of the spread hash
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Semaphore[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Semaphore(1, true);
+        }
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.waitTimer = Timer.builder("account.sequencer.wait").publishPercentileHistogram().register(meterRegistry);
+        this.contended = meterRegistry.counter("account.sequencer.contended");
+        this.timeouts = meterRegistry.counter("account.sequencer.timeouts");
+        Gauge.builder("account.sequencer.waiting", waiting, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /** Runs {@code operation} once no other operation on any of {@code userIds} is running here. */
+    public <T> T run(Collection<String> userIds, Supplier<T> operation) {
+        Runnable release = acquire(userIds);
+        try {
+            return operation.get();
+        } finally {
+            release.run();
+        }
+    }
+
+    public <T> T run(String userId, Supplier<T> operation) {
+        return run(Collections.singletonList(userId), operation);
+    }
+
+    /**
+     * Waits for the accounts on the calling thread, then holds them until the returned future
+     * completes, whichever thread completes it.
+     */
+    public <T> CompletableFuture<T> runAsync(Collection<String> userIds, Supplier<CompletableFuture<T>> operation) {
+        Runnable release = acquire(userIds);
+        CompletableFuture<T> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return result.whenComplete((value, failure) -> release.run());
+    }
+
+    public <T> CompletableFuture<T> runAsync(String userId, Supplier<CompletableFuture<T>> operation) {
+        return runAsync(Collections.singletonList(userId), operation);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stripes", stripes.length);
+        stats.put("waiting", waiting.get());
+        stats.put("acquired", waitTimer.count());
+        stats.put("contended", (long) contended.count());
+        stats.put("timeouts", (long) timeouts.count());
+        stats.put("maxWaitMillis", waitTimer.max(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    // stripes are taken in index order, so operations spanning several accounts cannot deadlock
+    private Runnable acquire(Collection<String> userIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String userId : userIds) {
+            indexes.add(stripe(userId));
+        }
+
+        long started = System.nanoTime();
+        long deadline = started + maxWaitNanos;
+        List<Integer> held = new ArrayList<>(indexes.size());
+        boolean counted = false;
+        waiting.incrementAndGet();
+        try {
+            for (int index : indexes) {
+                Semaphore stripe = stripes[index];
+                // the timed form keeps the semaphore's FIFO order, unlike tryAcquire()
+                if (stripe.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                    held.add(index);
+                    continue;
+                }
+                if (!counted) {
+                    contended.increment();
+                    counted = true;
+                }
+                if (!stripe.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    timeouts.increment();
+                    throw new AccountBusyException("Account is busy, retry shortly");
+                }
+                held.add(index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(held);
+            throw new AccountBusyException("Interrupted while waiting for the account");
+        } catch (RuntimeException e) {
+            release(held);
+            throw e;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        return () -> release(held);
+    }
+
+    private void release(List<Integer> held) {
+        for (int index : held) {
+            stripes[index].release();
+        }
+        held.clear();
+    }
+
+    private int stripe(String userId) {
+        int h = userId == null ? 0 : userId.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,220 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.utils.Money;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Accumulators for the in-process analytics engine. Each scan segment fills its own accumulator
+ * (plain long counters, amounts in cents) and the results are merged pairwise on the way back up
+ * a fork/join tree, so no shared state is touched while scanning.
+ */
+public final class AnalyticsAggregates {
+
+    private AnalyticsAggregates() {
+    }
+
+    public interface Accumulator<A extends Accumulator<A>> {
+        void add(Map<String, AttributeValue> item);
+
+        void merge(A other);
+    }
+
+    /**
+     * Splits segments 0..segments-1 into a fork/join tree; every leaf runs {@code leaf} for one
+     * segment into a fresh accumulator and parents merge their children.
+     */
+    public static <A extends Accumulator<A>> A aggregate(ForkJoinPool pool, int segments, Supplier<A> factory,
+                                                         BiConsumer<Integer, A> leaf) {
+        return pool.invoke(new SegmentTask<>(0, segments, factory, leaf));
+    }
+
+    /** Per-user and per-day money movement from the transaction ledger. */
+    public static final class Ledger implements Accumulator<Ledger> {
+        public final Map<String, Flow> byUser = new HashMap<>();
+        public final Map<String, Flow> byDay = new TreeMap<>();
+        public long records;
+
+        @Override
+        public void add(Map<String, AttributeValue> item) {
+            String userId = string(item, "user_id");
+            if (userId == null) return;
+            long cents = cents(number(item, "amount"));
+            boolean debit = "DEBIT".equalsIgnoreCase(string(item, "transaction_type"));
+
+            byUser.computeIfAbsent(userId, k -> new Flow()).add(debit, cents);
+            String day = day(item.get("timestamp"));
+            if (day != null) {
+                byDay.computeIfAbsent(day, k -> new Flow()).add(debit, cents);
+            }
+            records++;
+        }
+
+        @Override
+        public void merge(Ledger other) {
+            other.byUser.forEach((k, v) -> byUser.merge(k, v, Flow::merge));
+            other.byDay.forEach((k, v) -> byDay.merge(k, v, Flow::merge));
+            records += other.records;
+        }
+    }
+
+    /** Net buy/sell flow per stock from Portfolio_Transaction. */
+    public static final class Trades implements Accumulator<Trades> {
+        public final Map<String, StockFlow> byStock = new HashMap<>();
+        public long records;
+
+        @Override
+        public void add(Map<String, AttributeValue> item) {
+            String stock = string(item, "stockName");
+            if (stock == null) return;
+            long quantity = (long) Double.parseDouble(number(item, "quantity"));
+            long cents = Math.multiplyExact(cents(number(item, "pricePerUnit")), quantity);
+            boolean buy = "DEBIT".equalsIgnoreCase(string(item, "transactionType"));
+
+            StockFlow flow = byStock.computeIfAbsent(stock, k -> new StockFlow());
+            if (buy) {
+                flow.buyQuantity += quantity;
+                flow.buyCents += cents;
+            } else {
+                flow.sellQuantity += quantity;
+                flow.sellCents += cents;
+            }
+            flow.trades++;
+            records++;
+        }
+
+        @Override
+        public void merge(Trades other) {
+            other.byStock.forEach((k, v) -> byStock.merge(k, v, StockFlow::merge));
+            records += other.records;
+        }
+    }
+
+    /** user_id to name, role and balance, for labelling the other sheets. */
+    public static final class Users implements Accumulator<Users> {
+        public final Map<String, UserRow> byId = new HashMap<>();
+
+        @Override
+        public void add(Map<String, AttributeValue> item) {
+            String userId = string(item, "user_id");
+            if (userId == null) return;
+            byId.put(userId, new UserRow(string(item, "username"), string(item, "user_role"),
+                    cents(number(item, "current_balance")), "INACTIVE".equalsIgnoreCase(string(item, "status"))));
+        }
+
+        @Override
+        public void merge(Users other) {
+            byId.putAll(other.byId);
+        }
+    }
+
+    public static final class Flow {
+        public long count;
+        public long debitCents;
+        public long creditCents;
+
+        void add(boolean debit, long cents) {
+            count++;
+            if (debit) debitCents += cents;
+            else creditCents += cents;
+        }
+
+        Flow merge(Flow other) {
+            count += other.count;
+            debitCents += other.debitCents;
+            creditCents += other.creditCents;
+            return this;
+        }
+
+        public long volumeCents() {
+            return debitCents + creditCents;
+        }
+    }
+
+    public static final class StockFlow {
+        public long trades;
+        public long buyQuantity;
+        public long sellQuantity;
+        public long buyCents;
+        public long sellCents;
+
+        StockFlow merge(StockFlow other) {
+            trades += other.trades;
+            buyQuantity += other.buyQuantity;
+            sellQuantity += other.sellQuantity;
+            buyCents += other.buyCents;
+            sellCents += other.sellCents;
+            return this;
+        }
+    }
+
+    public record UserRow(String username, String role, long balanceCents, boolean inactive) {
+    }
+
+    private static final class SegmentTask<A extends Accumulator<A>> extends RecursiveTask<A> {
+        private final int from;
+        private final int to;
+        private final Supplier<A> factory;
+        private final BiConsumer<Integer, A> leaf;
+
+        SegmentTask(int from, int to, Supplier<A> factory, BiConsumer<Integer, A> leaf) {
+            this.from = from;
+            this.to = to;
+            this.factory = factory;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= 1) {
+                A accumulator = factory.get();
+                if (from < to) {
+                    leaf.accept(from, accumulator);
+                }
+                return accumulator;
+            }
+            int mid = (from + to) >>> 1;
+            SegmentTask<A> left = new SegmentTask<>(from, mid, factory, leaf);
+            left.fork();
+            A right = new SegmentTask<>(mid, to, factory, leaf).compute();
+            A result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    private static String string(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null ? null : value.s();
+    }
+
+    private static String number(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.n() == null ? "0" : value.n();
+    }
+
+    private static long cents(String amount) {
+        return Money.parse(amount);
+    }
+
+    // timestamps are "yyyy-MM-dd HH:mm:ss"; old trades stored epoch millis
+    private static String day(AttributeValue value) {
+        if (value == null) return null;
+        if (value.s() != null) return value.s().length() >= 10 ? value.s().substring(0, 10) : null;
+        if (value.n() != null) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value.n())), ZoneId.systemDefault())
+                    .toLocalDate().toString();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,321 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.exception.AnalyticsBusyException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.glue.model.EntityNotFoundException;
+import software.amazon.awssdk.services.glue.model.InvalidInputException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks analytics job runs so Glue is polled once per run instead of once per watching client.
+ * Each active run has a single poller on a virtual thread that backs off while the state does not
+ * change and pushes every change to all SSE subscribers. A start request while a run is still
+ * active returns that run instead of triggering the pipeline again.
+ * A run id sent by a client is checked with one GetJobRun before a poller is started for it, and
+ * at most max-pollers such pollers run at once; the run this instance started is always watched.
+ */
+@Slf4j
+@Service
+public class AnalyticsJobMonitor {
+
+    private static final Set<String> ACTIVE_STATES = Set.of("STARTING", "RUNNING", "STOPPING", "WAITING");
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+    private static final String LOCAL_RUN_PREFIX = "local-";
+
+    private final AnalyticsService analyticsService;
+    private final LambdaService lambdaService;
+    private final LocalAnalyticsEngine localAnalyticsEngine;
+    private final ObjectMapper objectMapper;
+    private final String defaultEngine;
+    private final long initialPollMillis;
+    private final long maxPollMillis;
+    private final long emitterTimeoutMillis;
+    private final long retentionMillis;
+    private final Semaphore pollerPermits;
+
+    private final Map<String, JobWatch> watches = new ConcurrentHashMap<>();
+    private final ReentrantLock startLock = new ReentrantLock();
+    private volatile String activeRunId;
+
+    public AnalyticsJobMonitor(AnalyticsService analyticsService, LambdaService lambdaService,
+                               LocalAnalyticsEngine localAnalyticsEngine, ObjectMapper objectMapper,
+                               @Value("${analytics.engine:glue}") String defaultEngine,
+                               @Value("${analytics.status.initial-poll-ms:2000}") long initialPollMillis,
+                               @Value("${analytics.status.max-poll-ms:30000}") long maxPollMillis,
+                               @Value("${analytics.status.sse-timeout-minutes:30}") long emitterTimeoutMinutes,
+                               @Value("${analytics.status.max-pollers:16}") int maxPollers) {
+        this.analyticsService = analyticsService;
+        this.lambdaService = lambdaService;
+        this.localAnalyticsEngine = localAnalyticsEngine;
+        this.objectMapper = objectMapper;
+        this.defaultEngine = defaultEngine;
+        this.initialPollMillis = initialPollMillis;
+        this.maxPollMillis = maxPollMillis;
+        this.emitterTimeoutMillis = emitterTimeoutMinutes * 60 * 1000;
+        this.retentionMillis = 10 * 60 * 1000;
+        this.pollerPermits = new Semaphore(maxPollers);
+    }
+
+    /**
+     * Triggers a run unless one is already active. {@code engine} is "glue" (Lambda and Glue, returns
+     * the Lambda payload) or "local" (in-process engine); null uses analytics.engine.
+     */
+    public String start(String engine) {
+        String selected = engine == null || engine.isBlank() ? defaultEngine : engine.trim().toLowerCase();
+        if (!"glue".equals(selected) && !"local".equals(selected)) {
+            throw new IllegalArgumentException("engine must be glue or local");
+        }
+
+        startLock.lock();
+        try {
+            String running = activeRunId;
+            JobWatch watch = running == null ? null : watches.get(running);
+            if (watch != null && !watch.finished) {
+                log.info("Analytics run {} is still {}, not triggering another", running, watch.status);
+                return startResponse(running, watch.status == null ? "RUNNING" : watch.status, true);
+            }
+
+            if ("local".equals(selected)) {
+                return startLocal();
+            }
+
+            String response = lambdaService.invokeLambda();
+            String runId = jobRunId(response);
+            if (runId != null) {
+                activeRunId = runId;
+                watch(runId, false);
+            }
+            return response;
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    private String startLocal() {
+        String runId = LOCAL_RUN_PREFIX + UUID.randomUUID();
+        JobWatch watch = new JobWatch(runId);
+        watch.update("RUNNING");
+        watches.put(runId, watch);
+        activeRunId = runId;
+
+        Thread.ofVirtual().name("local-analytics-" + runId).start(() -> {
+            try {
+                localAnalyticsEngine.run();
+                watch.update("SUCCEEDED");
+            } catch (RuntimeException e) {
+                log.error("Local analytics run {} failed", runId, e);
+                watch.update("FAILED");
+            }
+            retire(watch);
+        });
+        return startResponse(runId, "RUNNING", false);
+    }
+
+    /** Last state seen by the run's poller, or a direct Glue call when the run is not being watched. */
+    public String status(String jobId) {
+        JobWatch watch = watches.get(jobId);
+        if (watch != null && watch.status != null) {
+            return watch.status;
+        }
+        return analyticsService.getJobStatus(jobId);
+    }
+
+    /**
+     * Streams "status" events for the run until it reaches a final state. Runs not watched yet
+     * must exist and still be active.
+     */
+    public SseEmitter subscribe(String jobId) {
+        JobWatch watch = watches.get(jobId);
+        if (watch == null) {
+            if (jobId.startsWith(LOCAL_RUN_PREFIX)) {
+                throw new IllegalArgumentException("Unknown analytics run: " + jobId);
+            }
+            String state = currentState(jobId);
+            if (!ACTIVE_STATES.contains(state)) {
+                throw new IllegalArgumentException("Analytics run " + jobId + " has already finished: " + state);
+            }
+            watch = watch(jobId, true);
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        watch.add(emitter);
+        return emitter;
+    }
+
+    private String currentState(String jobId) {
+        try {
+            return analyticsService.fetchJobRunState(jobId);
+        } catch (EntityNotFoundException | InvalidInputException e) {
+            throw new IllegalArgumentException("Unknown analytics run: " + jobId);
+        }
+    }
+
+    // capped pollers hold one of max-pollers permits until their run reaches a final state
+    private JobWatch watch(String jobId, boolean capped) {
+        JobWatch existing = watches.get(jobId);
+        if (existing != null) {
+            return existing;
+        }
+        if (capped && !pollerPermits.tryAcquire()) {
+            throw new AnalyticsBusyException("Too many analytics runs are being watched, retry later");
+        }
+        JobWatch created = new JobWatch(jobId);
+        existing = watches.putIfAbsent(jobId, created);
+        if (existing != null) {
+            if (capped) {
+                pollerPermits.release();
+            }
+            return existing;
+        }
+        Thread.ofVirtual().name("glue-poller-" + jobId).start(() -> {
+            try {
+                poll(created);
+            } finally {
+                if (capped) {
+                    pollerPermits.release();
+                }
+            }
+            retire(created);
+        });
+        return created;
+    }
+
+    private void poll(JobWatch watch) {
+        long delay = initialPollMillis;
+        int failures = 0;
+        try {
+            while (true) {
+                String status;
+                try {
+                    status = analyticsService.fetchJobRunState(watch.jobId);
+                    failures = 0;
+                } catch (SdkException e) {
+                    if (++failures < MAX_CONSECUTIVE_FAILURES) {
+                        log.warn("Glue status poll for {} failed ({}), backing off", watch.jobId, e.getMessage());
+                        delay = Math.min(maxPollMillis, delay * 2);
+                        Thread.sleep(delay);
+                        continue;
+                    }
+                    status = "ERROR";
+                }
+
+                // poll quickly right after a change, slow down while the state holds
+                delay = watch.update(status) ? initialPollMillis : Math.min(maxPollMillis, delay * 2);
+                if (!ACTIVE_STATES.contains(status)) {
+                    break;
+                }
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Glue status poller for {} stopped", watch.jobId, e);
+            watch.update("ERROR");
+        }
+    }
+
+    // finished runs stay visible for late subscribers and status calls before they are dropped
+    private void retire(JobWatch watch) {
+        watch.finish();
+        try {
+            Thread.sleep(retentionMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watches.remove(watch.jobId, watch);
+        }
+    }
+
+    private String jobRunId(String lambdaResponse) {
+        try {
+            JsonNode node = objectMapper.readTree(lambdaResponse);
+            if (node != null && node.isTextual()) {
+                // the function may return its JSON body as a string
+                node = objectMapper.readTree(node.asText());
+            }
+            JsonNode runId = node == null ? null : node.get("jobRunId");
+            return runId != null && runId.isTextual() ? runId.asText() : null;
+        } catch (JsonProcessingException e) {
+            log.warn("Could not read jobRunId from the analytics trigger response");
+            return null;
+        }
+    }
+
+    private String startResponse(String runId, String status, boolean deduplicated) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", status);
+        response.put("jobRunId", runId);
+        response.put("deduplicated", deduplicated);
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not build analytics start response");
+        }
+    }
+
+    private static final class JobWatch {
+        private final String jobId;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private volatile String status;
+        private volatile boolean finished;
+
+        private JobWatch(String jobId) {
+            this.jobId = jobId;
+        }
+
+        void add(SseEmitter emitter) {
+            emitter.onCompletion(() -> emitters.remove(emitter));
+            emitter.onTimeout(() -> emitters.remove(emitter));
+            emitter.onError(e -> emitters.remove(emitter));
+            emitters.add(emitter);
+
+            String current = status;
+            if (current != null) {
+                send(emitter, current);
+            }
+            if (finished) {
+                emitter.complete();
+            }
+        }
+
+        /** Records the state and pushes it to subscribers; returns whether it changed. */
+        boolean update(String newStatus) {
+            if (newStatus.equals(status)) {
+                return false;
+            }
+            status = newStatus;
+            emitters.forEach(emitter -> send(emitter, newStatus));
+            return true;
+        }
+
+        void finish() {
+            finished = true;
+            emitters.forEach(SseEmitter::complete);
+        }
+
+        private void send(SseEmitter emitter, String value) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(Map.of("jobId", jobId, "status", value)));
+            } catch (IOException | IllegalStateException e) {
+                // subscriber went away
+                emitters.remove(emitter);
+            }
+        }
+    }
+}
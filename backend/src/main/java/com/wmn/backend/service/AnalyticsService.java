@@ -1,91 +1,160 @@
 package com.wmn.backend.service;
 
 import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.ConcurrentCalls;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
-import software.amazon.awssdk.utils.IoUtils;
 import software.amazon.awssdk.services.glue.GlueClient;
 import software.amazon.awssdk.services.glue.model.GetJobRunRequest;
 import software.amazon.awssdk.services.glue.model.GetJobRunResponse;
 import software.amazon.awssdk.services.glue.model.GlueException;
 
-import java.util.Comparator;
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
 public class AnalyticsService {
 
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
-    public byte[] downloadAnalyticsReport() {
-        String latestObjectKey = "";
-        try {
-            S3Client s3Client = S3Client.builder()
-                    .region(CommonUtils.REGION)
-                    .build();
-
-            List<S3Object> objectSummaries = CommonUtils.listFilesInFolder(s3Client, CommonUtils.BUCKET_NAME, CommonUtils.FOLDER_PREFIX);
-            if (objectSummaries.isEmpty()) {
-                log.info("No files found in the specified S3 folder.");
-                return null; // No file found
-            }
+    private final S3Client s3Client;
+    private final GlueClient glueClient;
+    private final ReportCache reportCache;
+    private final ReportManifest reportManifest;
+    // Glue runs whose report has already been prefetched
+    private final Set<String> prefetchedRuns = ConcurrentHashMap.newKeySet();
 
-            Optional<S3Object> latestObjectOpt = objectSummaries.stream()
-                    .filter(obj -> obj.size() > 0)
-                    .max(Comparator.comparing(S3Object::lastModified));
-
-            if (latestObjectOpt.isPresent()) {
-                S3Object latestObject = latestObjectOpt.get();
-                latestObjectKey = latestObject.key();
+    public AnalyticsService(S3Client s3Client, GlueClient glueClient, ReportCache reportCache, ReportManifest reportManifest) {
+        this.s3Client = s3Client;
+        this.glueClient = glueClient;
+        this.reportCache = reportCache;
+        this.reportManifest = reportManifest;
+    }
 
-                log.info("Latest file identified: {} (Last Modified: {})", latestObjectKey, latestObject.lastModified());
+    /** Latest non-empty report in the analytics output folder, if any, resolved through the manifest. */
+    public Optional<S3Object> findLatestReport() {
+        return reportManifest.latest();
+    }
 
-                GetObjectRequest req = GetObjectRequest.builder()
-                        .bucket(CommonUtils.BUCKET_NAME)
-                        .key(latestObjectKey)
-                        .build();
+    /**
+     * Copies the report, or only the inclusive byte range start..end when start is given, to {@code out}.
+     * A locally cached copy is read from disk; otherwise the object is streamed from S3
+     * through a fixed-size buffer and cached in the background for the next download.
+     */
+    public long streamReport(S3Object report, Long start, Long end, OutputStream out) throws IOException {
+        Optional<FileChannel> cached = reportCache.open(report);
+        if (cached.isPresent()) {
+            try (FileChannel channel = cached.get()) {
+                long position = start == null ? 0 : start;
+                long count = start == null ? channel.size() : end - start + 1;
+                long sent = ReportCache.transferTo(channel, position, count, out);
+                log.info("Download complete. Sent {} bytes from the local cache. File name {}", sent, report.key());
+                return sent;
+            }
+        }
 
-                ResponseInputStream<GetObjectResponse> s3Stream = s3Client.getObject(req);
-                byte[] data = IoUtils.toByteArray(s3Stream);
+        reportCache.prefetch(report);
+        return streamFromS3(report, start, end, out);
+    }
 
-                log.info("Download complete. File size: {} bytes. File name {}", data.length, latestObjectKey);
-                return data;
-            }
+    private long streamFromS3(S3Object report, Long start, Long end, OutputStream out) throws IOException {
+        String key = report.key();
+        // If-Match: the length, range and ETag already sent describe this version, so never mix in another
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(CommonUtils.BUCKET_NAME)
+                .key(key)
+                .ifMatch(report.eTag());
+        if (start != null) {
+            request.range("bytes=" + start + "-" + end);
+        }
 
+        ResponseInputStream<GetObjectResponse> s3Stream;
+        try {
+            s3Stream = s3Client.getObject(request.build());
+        } catch (NoSuchKeyException e) {
+            // the manifest points at a report that was removed; repoint it for the next download
+            log.warn("Report {}/{} no longer exists, rebuilding the report manifest", CommonUtils.BUCKET_NAME, key);
+            reportManifest.rebuild();
+            throw new RuntimeException("S3 object not found or access denied");
         } catch (S3Exception e) {
-            log.warn("S3 object not found or access denied: {}/{}", CommonUtils.BUCKET_NAME, latestObjectKey, e);
+            if (e.statusCode() == 412) {
+                // the report was rewritten under the same key since the manifest was read
+                log.warn("Report {}/{} no longer matches ETag {}, rebuilding the report manifest", CommonUtils.BUCKET_NAME, key, report.eTag());
+                reportManifest.rebuild();
+                throw new RuntimeException("Report changed during download, retry the download");
+            }
+            log.warn("S3 object not found or access denied: {}/{}", CommonUtils.BUCKET_NAME, key, e);
             throw new RuntimeException("S3 object not found or access denied");
-        } catch (Exception e) {
-            log.error("Error retrieving S3 object {}/{}", CommonUtils.BUCKET_NAME, latestObjectKey, e);
-            throw new RuntimeException("Error retrieving S3 object");
         }
-        return null;
-    }
 
-    public String getJobStatus(String jobId) {
-        String jobName = "wmngluejob";
-        try (GlueClient glueClient = GlueClient.create()) {
-            // Fetch the job run details using jobId
-            GetJobRunRequest request = GetJobRunRequest.builder()
-                    .jobName(jobName)
-                    .runId(jobId)
-                    .build();
-
-            GetJobRunResponse response = glueClient.getJobRun(request);
+        long copied = 0;
+        try (s3Stream) {
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = s3Stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                copied += read;
+            }
+            out.flush();
+        } catch (IOException e) {
+            // client went away: drop the S3 connection instead of draining the rest of the object
+            s3Stream.abort();
+            log.info("Download of {} aborted after {} bytes", key, copied);
+            throw e;
+        }
 
-            // Extract and return the status
-            return response.jobRun().jobRunStateAsString();
+        log.info("Download complete. Sent {} bytes. File name {}", copied, key);
+        return copied;
+    }
 
+    public String getJobStatus(String jobId) {
+        try {
+            return fetchJobRunState(jobId);
         } catch (GlueException e) {
             System.err.println("Error fetching Glue job status: " + e.awsErrorDetails().errorMessage());
             return "ERROR";
         }
     }
+
+    /** One GetJobRun call; Glue errors (e.g. throttling) are left to the caller. */
+    public String fetchJobRunState(String jobId) {
+        String jobName = "wmngluejob";
+        // Fetch the job run details using jobId
+        GetJobRunRequest request = GetJobRunRequest.builder()
+                .jobName(jobName)
+                .runId(jobId)
+                .build();
+
+        GetJobRunResponse response = glueClient.getJobRun(request);
+
+        // Extract and return the status
+        String status = response.jobRun().jobRunStateAsString();
+        if ("SUCCEEDED".equals(status) && prefetchedRuns.add(jobId)) {
+            prefetchLatestReport(jobId);
+        }
+        return status;
+    }
+
+    // the run just wrote a new report: point the manifest at it and pull it into the local cache
+    private void prefetchLatestReport(String jobId) {
+        ConcurrentCalls.async(() -> {
+            reportManifest.rebuild().ifPresent(reportCache::fetch);
+            return null;
+        }).exceptionally(e -> {
+            log.warn("Prefetch of the report for Glue run {} failed", jobId, ConcurrentCalls.unwrap(e));
+            return null;
+        });
+    }
 }
@@ -0,0 +1,110 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.PortfolioStockDto;
+import com.wmn.backend.dto.UserPortfolioResponse;
+import com.wmn.backend.model.InvestInStocks;
+import com.wmn.backend.model.InvestInStocksResponse;
+import com.wmn.backend.utils.ConcurrentCalls;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.IdempotentParameterMismatchException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking counterpart of {@link StockMarketService} for orders and portfolio reads.
+ */
+@Service
+@ConditionalOnProperty(name = "dynamodb.client-mode", havingValue = "async")
+public class AsyncStockMarketService {
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final StockMarketService stockMarketService;
+    private final AsyncUserService asyncUserService;
+    private final UserService userService;
+    private final HoldingsService holdingsService;
+    private final LedgerWriteBehind ledgerWriteBehind;
+    private final AccountSequencer accountSequencer;
+
+    public AsyncStockMarketService(DynamoDbAsyncClient dynamoDbAsyncClient, StockMarketService stockMarketService,
+                                   AsyncUserService asyncUserService, UserService userService,
+                                   HoldingsService holdingsService, LedgerWriteBehind ledgerWriteBehind,
+                                   AccountSequencer accountSequencer) {
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.stockMarketService = stockMarketService;
+        this.asyncUserService = asyncUserService;
+        this.userService = userService;
+        this.holdingsService = holdingsService;
+        this.ledgerWriteBehind = ledgerWriteBehind;
+        this.accountSequencer = accountSequencer;
+    }
+
+    public CompletableFuture<InvestInStocksResponse> investInStocks(InvestInStocks invest, String requestToken) {
+        stockMarketService.validateOrder(invest);
+        StockMarketService.PricedOrder order = stockMarketService.priceOrder(invest);
+
+        // taken on the request thread and released as soon as the order's write completes
+        return accountSequencer.runAsync(invest.getUserId(), () -> asyncUserService.requireUser(invest.getUserId()).thenCompose(user -> {
+            StockMarketService.PlacedOrder placed = stockMarketService.placeOrder(invest, order, user, requestToken);
+            return dynamoDbAsyncClient.transactWriteItems(placed.request())
+                    .handle((response, failure) -> {
+                        userService.evictUser(user.getUserId());
+                        if (failure == null) {
+                            return placed;
+                        }
+                        Throwable cause = ConcurrentCalls.unwrap(failure);
+                        if (cause instanceof TransactionCanceledException cancelled) {
+                            throw stockMarketService.orderFailure(cancelled, invest, order);
+                        }
+                        if (cause instanceof IdempotentParameterMismatchException) {
+                            throw stockMarketService.alreadyPlaced();
+                        }
+                        throw new CompletionException(cause);
+                    });
+        })).thenCompose(placed -> writeDeferred(placed.deferred())
+                .thenCompose(written -> asyncUserService.refreshUser(invest.getUserId()))
+                .thenApply(user -> stockMarketService.toResponse(invest, order, user.getCurrentBalance(), placed.txn())));
+    }
+
+    public CompletableFuture<UserPortfolioResponse> getUserPortfolio(String userId) {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("userId is required");
+        }
+
+        return asyncUserService.requireUser(userId)
+                .thenCombine(holdings(holdingsService.holdingsQuery(userId), new ArrayList<>()), stockMarketService::toPortfolio);
+    }
+
+    // follows LastEvaluatedKey page by page without blocking between pages
+    private CompletableFuture<List<PortfolioStockDto>> holdings(QueryRequest request, List<PortfolioStockDto> stocks) {
+        return dynamoDbAsyncClient.query(request).thenCompose(response -> {
+            response.items().forEach(item -> holdingsService.addOpenPosition(stocks, item));
+            if (response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()) {
+                return holdings(request.toBuilder().exclusiveStartKey(response.lastEvaluatedKey()).build(), stocks);
+            }
+            return CompletableFuture.completedFuture(stocks);
+        });
+    }
+
+    // records the write-behind pipeline turned away are written inline instead
+    private CompletableFuture<Void> writeDeferred(List<Pair<String, Map<String, AttributeValue>>> records) {
+        List<CompletableFuture<PutItemResponse>> puts = new ArrayList<>();
+        for (Pair<String, Map<String, AttributeValue>> record : records) {
+            if (!ledgerWriteBehind.submit(record.getLeft(), record.getRight())) {
+                puts.add(dynamoDbAsyncClient.putItem(PutItemRequest.builder().tableName(record.getLeft()).item(record.getRight()).build()));
+            }
+        }
+        return CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0]));
+    }
+}
@@ -0,0 +1,77 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.TransactionPage;
+import com.wmn.backend.dto.TransferDto;
+import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.utils.ConcurrentCalls;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.IdempotentParameterMismatchException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking counterpart of {@link TransactionService} for history reads and transfers.
+ * Requests, validation and error mapping are shared with the sync service.
+ */
+@Service
+@ConditionalOnProperty(name = "dynamodb.client-mode", havingValue = "async")
+public class AsyncTransactionService {
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final TransactionService transactionService;
+    private final AsyncUserService asyncUserService;
+    private final UserService userService;
+    private final AccountSequencer accountSequencer;
+
+    public AsyncTransactionService(DynamoDbAsyncClient dynamoDbAsyncClient, TransactionService transactionService,
+                                   AsyncUserService asyncUserService, UserService userService,
+                                   AccountSequencer accountSequencer) {
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.transactionService = transactionService;
+        this.asyncUserService = asyncUserService;
+        this.userService = userService;
+        this.accountSequencer = accountSequencer;
+    }
+
+    public CompletableFuture<TransactionPage> listTransactions(String userId, int limit, String cursor) {
+        return dynamoDbAsyncClient.query(transactionService.historyQuery(userId, limit, cursor))
+                .thenApply(transactionService::toPage);
+    }
+
+    public CompletableFuture<Map<String, Object>> createTransaction(TransferDto txn, String requestToken) {
+        transactionService.validateTransfer(txn);
+
+        // the accounts are taken here, on the request thread, and held until the transfer completes
+        return accountSequencer.runAsync(Arrays.asList(txn.getSourceUserId(), txn.getDestinationUserId()),
+                () -> asyncUserService.requireUser(txn.getSourceUserId())
+                        .thenCombine(asyncUserService.requireUser(txn.getDestinationUserId()), Pair::of)
+                        .thenCompose(parties -> transfer(parties.getLeft(), parties.getRight(), txn.getAmount(), requestToken)));
+    }
+
+    private CompletableFuture<Map<String, Object>> transfer(UserResponseDto source, UserResponseDto destination, long amount,
+                                                         String requestToken) {
+        return dynamoDbAsyncClient.transactWriteItems(transactionService.transferRequest(source, destination, amount, requestToken))
+                .handle((response, failure) -> {
+                    userService.evictUser(source.getUserId());
+                    userService.evictUser(destination.getUserId());
+                    if (failure == null) {
+                        return transactionService.transferResponse(source, destination);
+                    }
+                    Throwable cause = ConcurrentCalls.unwrap(failure);
+                    if (cause instanceof TransactionCanceledException cancelled) {
+                        throw transactionService.transferFailure(cancelled, source, destination);
+                    }
+                    if (cause instanceof IdempotentParameterMismatchException) {
+                        throw transactionService.alreadyApplied();
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+}
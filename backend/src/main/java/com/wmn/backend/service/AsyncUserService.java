@@ -0,0 +1,91 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.repository.ItemMappers;
+import com.wmn.backend.utils.ConcurrentCalls;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of the user reads in {@link UserService},
+ * backed by DynamoDbAsyncClient. Shares the user cache and request builders of the sync service.
+ */
+@Service
+@ConditionalOnProperty(name = "dynamodb.client-mode", havingValue = "async")
+public class AsyncUserService {
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final UserService userService;
+    private final UserCache userCache;
+    private final UsernameIndex usernameIndex;
+
+    public AsyncUserService(DynamoDbAsyncClient dynamoDbAsyncClient, UserService userService,
+                            UserCache userCache, UsernameIndex usernameIndex) {
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.userService = userService;
+        this.userCache = userCache;
+        this.usernameIndex = usernameIndex;
+    }
+
+    public CompletableFuture<Optional<UserResponseDto>> getUserByUserId(String userId) {
+        return loadUserItem(userId).thenApply(this::toActiveUser);
+    }
+
+    public CompletableFuture<UserResponseDto> requireUser(String userId) {
+        return getUserByUserId(userId).thenApply(user ->
+                user.orElseThrow(() -> new IllegalArgumentException("User not found: " + userId)));
+    }
+
+    public CompletableFuture<Optional<UserResponseDto>> getUser(String username) {
+        if (!usernameIndex.usesGsi()) {
+            // the in-process index (and its one-time scan) lives in the sync path
+            return ConcurrentCalls.async(() -> userService.getUser(username));
+        }
+        return dynamoDbAsyncClient.query(usernameIndex.indexQuery(username))
+                .thenApply(usernameIndex::firstItem)
+                .thenApply(this::toActiveUser);
+    }
+
+    /** Non-blocking {@link UserService#refreshUser}. */
+    public CompletableFuture<UserResponseDto> refreshUser(String userId) {
+        long loadGeneration = userCache.generation();
+        return dynamoDbAsyncClient.getItem(userService.consistentUserItemRequest(userId)).thenApply(response -> {
+            Map<String, AttributeValue> item = userService.itemOf(response);
+            if (item == null) {
+                throw new IllegalArgumentException("User not found: " + userId);
+            }
+            userCache.putLoaded(userId, item, loadGeneration);
+            return ItemMappers.toUser(item);
+        });
+    }
+
+    private CompletableFuture<Map<String, AttributeValue>> loadUserItem(String userId) {
+        Map<String, AttributeValue> cached = userCache.lookup(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        long loadGeneration = userCache.generation();
+        return dynamoDbAsyncClient.getItem(userService.userItemRequest(userId)).thenApply(response -> {
+            Map<String, AttributeValue> item = userService.itemOf(response);
+            userCache.putLoaded(userId, item, loadGeneration);
+            return item;
+        });
+    }
+
+    private Optional<UserResponseDto> toActiveUser(Map<String, AttributeValue> item) {
+        if (item == null) {
+            return Optional.empty();
+        }
+        if (userService.isInactive(item)) {
+            throw new RuntimeException("User not found");
+        }
+        return Optional.of(ItemMappers.toUser(item));
+    }
+}
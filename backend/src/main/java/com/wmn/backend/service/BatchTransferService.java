@@ -0,0 +1,321 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.BatchTransferResponse;
+import com.wmn.backend.dto.BatchTransferResult;
+import com.wmn.backend.dto.TransferDto;
+import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.exception.AccountBusyException;
+import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.repository.ItemMappers;
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a batch of transfers (payroll, refunds) with as few conditional writes as possible.
+ * Transfers are grouped into sets of accounts that are connected through the batch; groups share
+ * no account and run in parallel, while the transfers of a group are applied in request order.
+ * Each group goes out in TransactWriteItems chunks that hold one balance update per account with
+ * the chunk's net movement, plus the ledger records of every transfer. An account that is debited
+ * is conditioned on covering its lowest running balance within the chunk, so a chunk commits
+ * exactly when applying its transfers one by one, in order, would not overdraw any account.
+ * When it would, the chunk is applied transfer by transfer instead to find the ones to reject.
+ */
+@Slf4j
+@Service
+public class BatchTransferService {
+
+    // TransactWriteItems limit: account updates plus two ledger records per transfer
+    private static final int MAX_TRANSACT_ITEMS = 100;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final UserService userService;
+    private final TransactionService transactionService;
+    private final AccountSequencer accountSequencer;
+    private final int maxItems;
+    private final int parallelism;
+
+    public BatchTransferService(DynamoDbClient dynamoDbClient, UserService userService, TransactionService transactionService,
+                                AccountSequencer accountSequencer,
+                                @Value("${transaction.batch.max-items:5000}") int maxItems,
+                                @Value("${transaction.batch.parallelism:16}") int parallelism) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.userService = userService;
+        this.transactionService = transactionService;
+        this.accountSequencer = accountSequencer;
+        this.maxItems = maxItems;
+        this.parallelism = parallelism;
+    }
+
+    public BatchTransferResponse transfer(List<TransferDto> transfers) {
+        if (transfers == null || transfers.isEmpty()) {
+            throw new IllegalArgumentException("At least one transfer is required");
+        }
+        if (transfers.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " transfers per batch");
+        }
+        long started = System.currentTimeMillis();
+        BatchTransferResult[] results = new BatchTransferResult[transfers.size()];
+
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferDto txn = transfers.get(i);
+            try {
+                if (txn == null || txn.getDestinationUserId() == null) {
+                    throw new IllegalArgumentException("Source and destination users are required");
+                }
+                transactionService.validateTransfer(txn);
+                valid.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = result(i, txn, "REJECTED", e.getMessage());
+            }
+        }
+
+        Map<String, UserResponseDto> users = loadUsers(transfers, valid);
+        List<Integer> resolved = new ArrayList<>(valid.size());
+        for (int i : valid) {
+            TransferDto txn = transfers.get(i);
+            String missing = !users.containsKey(txn.getSourceUserId()) ? txn.getSourceUserId()
+                    : !users.containsKey(txn.getDestinationUserId()) ? txn.getDestinationUserId() : null;
+            if (missing != null) {
+                results[i] = result(i, txn, "REJECTED", "User not found: " + missing);
+            } else {
+                resolved.add(i);
+            }
+        }
+
+        Collection<List<Integer>> groups = groups(transfers, resolved);
+        AtomicInteger writes = new AtomicInteger();
+        runBounded(groups.stream().<Runnable>map(group -> () -> {
+            try {
+                applyGroup(transfers, group, users, results, writes);
+            } catch (RuntimeException e) {
+                log.error("Batch transfer group of {} transfers stopped", group.size(), e);
+                for (int i : group) {
+                    if (results[i] == null) {
+                        results[i] = result(i, transfers.get(i), "FAILED", "Transfer could not be completed, please retry");
+                    }
+                }
+            }
+        }).toList());
+
+        int applied = 0, rejected = 0, failed = 0;
+        for (BatchTransferResult result : results) {
+            switch (result.getStatus()) {
+                case "APPLIED" -> applied++;
+                case "REJECTED" -> rejected++;
+                default -> failed++;
+            }
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        double perSecond = applied * 1000.0 / Math.max(1, elapsed);
+        log.info("Batch of {} transfers: {} applied, {} rejected, {} failed in {} groups, {} writes, {} ms",
+                transfers.size(), applied, rejected, failed, groups.size(), writes.get(), elapsed);
+        return new BatchTransferResponse(Arrays.asList(results), applied, rejected, failed, groups.size(), writes.get(), elapsed, perSecond);
+    }
+
+    // every account of the batch read once, in parallel; unknown or inactive ones are left out
+    private Map<String, UserResponseDto> loadUsers(List<TransferDto> transfers, List<Integer> valid) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (int i : valid) {
+            ids.add(transfers.get(i).getSourceUserId());
+            ids.add(transfers.get(i).getDestinationUserId());
+        }
+        Map<String, UserResponseDto> users = new ConcurrentHashMap<>();
+        runBounded(ids.stream().<Runnable>map(id -> () -> {
+            try {
+                userService.getUserByUserId(id).ifPresent(user -> users.put(id, user));
+            } catch (RuntimeException e) {
+                log.debug("Batch transfer account {} not usable: {}", id, e.getMessage());
+            }
+        }).toList());
+        return users;
+    }
+
+    // union-find over accounts; each group keeps its transfers in request order
+    private Collection<List<Integer>> groups(List<TransferDto> transfers, List<Integer> indexes) {
+        Map<String, String> parent = new HashMap<>();
+        for (int i : indexes) {
+            TransferDto txn = transfers.get(i);
+            String a = root(parent, txn.getSourceUserId());
+            String b = root(parent, txn.getDestinationUserId());
+            if (!a.equals(b)) {
+                parent.put(a, b);
+            }
+        }
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i : indexes) {
+            groups.computeIfAbsent(root(parent, transfers.get(i).getSourceUserId()), k -> new ArrayList<>()).add(i);
+        }
+        return groups.values();
+    }
+
+    private String root(Map<String, String> parent, String account) {
+        String root = account;
+        String next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        // path compression
+        String node = account;
+        while (!node.equals(root)) {
+            node = parent.put(node, root);
+        }
+        return root;
+    }
+
+    private void applyGroup(List<TransferDto> transfers, List<Integer> group, Map<String, UserResponseDto> users,
+                            BatchTransferResult[] results, AtomicInteger writes) {
+        List<Integer> chunk = new ArrayList<>();
+        Set<String> accounts = new HashSet<>();
+        for (int i : group) {
+            TransferDto txn = transfers.get(i);
+            int newAccounts = (accounts.contains(txn.getSourceUserId()) ? 0 : 1) + (accounts.contains(txn.getDestinationUserId()) ? 0 : 1);
+            if (accounts.size() + newAccounts + 2 * (chunk.size() + 1) > MAX_TRANSACT_ITEMS) {
+                applyChunk(transfers, chunk, users, results, writes);
+                chunk = new ArrayList<>();
+                accounts.clear();
+            }
+            chunk.add(i);
+            accounts.add(txn.getSourceUserId());
+            accounts.add(txn.getDestinationUserId());
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(transfers, chunk, users, results, writes);
+        }
+    }
+
+    private void applyChunk(List<TransferDto> transfers, List<Integer> chunk, Map<String, UserResponseDto> users,
+                            BatchTransferResult[] results, AtomicInteger writes) {
+        // net movement and lowest running balance change per account, in request order
+        Map<String, long[]> movements = new LinkedHashMap<>();
+        List<TransactWriteItem> ledger = new ArrayList<>(2 * chunk.size());
+        for (int i : chunk) {
+            TransferDto txn = transfers.get(i);
+            UserResponseDto source = users.get(txn.getSourceUserId());
+            UserResponseDto destination = users.get(txn.getDestinationUserId());
+            long amount = txn.getAmount();
+
+            long[] debited = movements.computeIfAbsent(source.getUserId(), k -> new long[2]);
+            debited[0] = Money.minus(debited[0], amount);
+            debited[1] = Math.min(debited[1], debited[0]);
+            long[] credited = movements.computeIfAbsent(destination.getUserId(), k -> new long[2]);
+            credited[0] = Money.plus(credited[0], amount);
+
+            TransactionDto debit = transactionService.newTransactionRecord(source.getUserId(), source.getUsername(), "DEBIT", amount, destination.getUsername());
+            TransactionDto credit = transactionService.newTransactionRecord(destination.getUserId(), source.getUsername(), "CREDIT", amount, destination.getUsername());
+            ledger.add(TransactWriteItem.builder().put(Put.builder().tableName(CommonUtils.TRANSACTION).item(ItemMappers.transactionItem(debit)).build()).build());
+            ledger.add(TransactWriteItem.builder().put(Put.builder().tableName(CommonUtils.TRANSACTION).item(ItemMappers.transactionItem(credit)).build()).build());
+        }
+
+        List<TransactWriteItem> items = new ArrayList<>(movements.size() + ledger.size());
+        movements.forEach((userId, movement) -> items.add(TransactWriteItem.builder().update(netUpdate(userId, movement[0], -movement[1])).build()));
+        items.addAll(ledger);
+
+        try {
+            // single transfers and orders on these accounts wait for the chunk, and it for them
+            accountSequencer.run(movements.keySet(), () -> {
+                writeChunk(transfers, chunk, items, users, results, writes);
+                return null;
+            });
+        } catch (AccountBusyException e) {
+            for (int i : chunk) {
+                results[i] = result(i, transfers.get(i), "FAILED", e.getMessage());
+            }
+        } finally {
+            movements.keySet().forEach(userService::evictUser);
+        }
+    }
+
+    private void writeChunk(List<TransferDto> transfers, List<Integer> chunk, List<TransactWriteItem> items,
+                            Map<String, UserResponseDto> users, BatchTransferResult[] results, AtomicInteger writes) {
+        try {
+            writes.incrementAndGet();
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(items).build());
+            for (int i : chunk) {
+                results[i] = result(i, transfers.get(i), "APPLIED", null);
+            }
+        } catch (TransactionCanceledException e) {
+            // an account would be overdrawn part way, or a concurrent write got in the way
+            log.debug("Netted chunk of {} transfers cancelled, applying one by one: {}", chunk.size(), e.getMessage());
+            for (int i : chunk) {
+                applyOne(transfers.get(i), i, users, results, writes);
+            }
+        } catch (SdkException e) {
+            log.warn("Netted chunk of {} transfers failed: {}", chunk.size(), e.getMessage());
+            for (int i : chunk) {
+                results[i] = result(i, transfers.get(i), "FAILED", "Transfer could not be completed, please retry");
+            }
+        }
+    }
+
+    private void applyOne(TransferDto txn, int index, Map<String, UserResponseDto> users,
+                          BatchTransferResult[] results, AtomicInteger writes) {
+        UserResponseDto source = users.get(txn.getSourceUserId());
+        UserResponseDto destination = users.get(txn.getDestinationUserId());
+        try {
+            writes.incrementAndGet();
+            dynamoDbClient.transactWriteItems(transactionService.transferRequest(source, destination, txn.getAmount(), null));
+            results[index] = result(index, txn, "APPLIED", null);
+        } catch (TransactionCanceledException e) {
+            RuntimeException failure = transactionService.transferFailure(e, source, destination);
+            results[index] = result(index, txn, failure instanceof IllegalArgumentException ? "REJECTED" : "FAILED", failure.getMessage());
+        } catch (SdkException e) {
+            results[index] = result(index, txn, "FAILED", "Transfer could not be completed, please retry");
+        }
+    }
+
+    /** Adds {@code net} to the balance, provided the account exists and holds at least {@code required}. */
+    private Update netUpdate(String userId, long net, long required) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":net", AttributeValue.fromN(Money.format(net)));
+        String condition = "attribute_exists(user_id)";
+        if (required > 0) {
+            condition += " AND current_balance >= :required";
+            values.put(":required", AttributeValue.fromN(Money.format(required)));
+        }
+        return Update.builder()
+                .tableName(CommonUtils.USER)
+                .key(Map.of("user_id", AttributeValue.fromS(userId)))
+                .updateExpression("SET current_balance = current_balance + :net")
+                .conditionExpression(condition)
+                .expressionAttributeValues(values)
+                .build();
+    }
+
+    private BatchTransferResult result(int index, TransferDto txn, String status, String error) {
+        return new BatchTransferResult(index, status, txn == null ? null : txn.getSourceUserId(),
+                txn == null ? null : txn.getDestinationUserId(), error);
+    }
+
+    private void runBounded(List<Runnable> tasks) {
+        Semaphore permits = new Semaphore(parallelism);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Runnable task : tasks) {
+                permits.acquire();
+                workers.submit(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while applying batch transfers");
+        }
+    }
+}
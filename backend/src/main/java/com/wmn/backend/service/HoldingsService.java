@@ -0,0 +1,191 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.PortfolioStockDto;
+import com.wmn.backend.repository.ItemMappers;
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Read model of current positions keyed by (userId, stockName).
+ * Each trade adjusts its holding in the same transaction that records the trade, so a
+ * portfolio read is a single Query instead of a replay of the whole trade log.
+ * Quantity is the net position and cost_basis the net amount invested (buys minus sells).
+ */
+@Slf4j
+@Service
+public class HoldingsService {
+
+    private static final int BATCH_SIZE = 25;
+
+    private final DynamoDbClient dynamoDbClient;
+
+    public HoldingsService(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    /** Builds the holding adjustment for a trade; txnType is DEBIT (buy) or CREDIT (sell). */
+    public Update holdingUpdate(String userId, String stockName, int quantity, long pricePerUnit, String txnType, String timestamp) {
+        int signedQty = "DEBIT".equals(txnType) ? quantity : -quantity;
+        long signedAmount = Money.times(pricePerUnit, signedQty);
+
+        return Update.builder()
+                .tableName(CommonUtils.HOLDINGS)
+                .key(Map.of(
+                        "userId", AttributeValue.fromS(userId),
+                        "stockName", AttributeValue.fromS(stockName)))
+                .updateExpression("SET last_price = :price, last_trade_type = :type, last_trade_date = :ts ADD quantity :qty, cost_basis :amt")
+                .expressionAttributeValues(Map.of(
+                        ":price", AttributeValue.fromN(Money.format(pricePerUnit)),
+                        ":type", AttributeValue.fromS(txnType),
+                        ":ts", AttributeValue.fromS(timestamp),
+                        ":qty", AttributeValue.fromN(Integer.toString(signedQty)),
+                        ":amt", AttributeValue.fromN(Money.format(signedAmount))))
+                .build();
+    }
+
+    /** Open positions of the user, read with one Query on the holdings table. */
+    public List<PortfolioStockDto> getHoldings(String userId) {
+        List<PortfolioStockDto> stocks = new ArrayList<>();
+        for (Map<String, AttributeValue> item : dynamoDbClient.queryPaginator(holdingsQuery(userId)).items()) {
+            addOpenPosition(stocks, item);
+        }
+        return stocks;
+    }
+
+    /** Whether the holdings table has any row at all; one single-item Scan. */
+    public boolean hasHoldings() {
+        return !dynamoDbClient.scan(ScanRequest.builder().tableName(CommonUtils.HOLDINGS).limit(1).build()).items().isEmpty();
+    }
+
+    QueryRequest holdingsQuery(String userId) {
+        return QueryRequest.builder()
+                .tableName(CommonUtils.HOLDINGS)
+                .keyConditionExpression("userId = :u")
+                .expressionAttributeValues(Map.of(":u", AttributeValue.fromS(userId)))
+                .build();
+    }
+
+    void addOpenPosition(List<PortfolioStockDto> stocks, Map<String, AttributeValue> item) {
+        PortfolioStockDto stock = ItemMappers.toHolding(item);
+        if (stock.getQuantity() > 0) {
+            stocks.add(stock);
+        }
+    }
+
+    /**
+     * Regenerates every holding from the Portfolio_Transaction trade log and overwrites the
+     * holdings table with the result. Run it while trading is quiet: trades recorded while
+     * the log is being replayed can be overwritten.
+     */
+    public Map<String, Object> rebuild() {
+        long started = System.currentTimeMillis();
+        Map<String, Map<String, AttributeValue>> holdings = new HashMap<>();
+        long trades = 0;
+
+        ScanRequest scan = ScanRequest.builder().tableName(CommonUtils.PORTFOLIO).build();
+        for (Map<String, AttributeValue> trade : dynamoDbClient.scanPaginator(scan).items()) {
+            String userId = stringOf(trade.get("userId"));
+            String stockName = stringOf(trade.get("stockName"));
+            if (userId == null || stockName == null) continue;
+
+            String txnType = Optional.ofNullable(stringOf(trade.get("transactionType"))).orElse("UNKNOWN");
+            int qty = Integer.parseInt(numberOf(trade.get("quantity")));
+            long price = Money.parse(numberOf(trade.get("pricePerUnit")));
+            int signedQty = "DEBIT".equalsIgnoreCase(txnType) ? qty : "CREDIT".equalsIgnoreCase(txnType) ? -qty : 0;
+            String timestamp = timestampOf(trade.get("timestamp"));
+
+            Map<String, AttributeValue> holding = holdings.computeIfAbsent(userId + "\u0000" + stockName, k -> {
+                Map<String, AttributeValue> h = new HashMap<>();
+                h.put("userId", AttributeValue.fromS(userId));
+                h.put("stockName", AttributeValue.fromS(stockName));
+                h.put("quantity", AttributeValue.fromN("0"));
+                h.put("cost_basis", AttributeValue.fromN("0"));
+                return h;
+            });
+
+            holding.put("quantity", AttributeValue.fromN(Long.toString(Long.parseLong(holding.get("quantity").n()) + signedQty)));
+            holding.put("cost_basis", AttributeValue.fromN(Money.format(Money.parse(holding.get("cost_basis").n()) + Money.times(price, signedQty))));
+
+            String lastDate = stringOf(holding.get("last_trade_date"));
+            if (timestamp != null && (lastDate == null || timestamp.compareTo(lastDate) >= 0)) {
+                holding.put("last_trade_date", AttributeValue.fromS(timestamp));
+                holding.put("last_trade_type", AttributeValue.fromS(txnType));
+                holding.put("last_price", AttributeValue.fromN(Money.format(price)));
+            } else if (!holding.containsKey("last_price")) {
+                holding.put("last_price", AttributeValue.fromN(Money.format(price)));
+            }
+            trades++;
+        }
+
+        List<WriteRequest> batch = new ArrayList<>(BATCH_SIZE);
+        for (Map<String, AttributeValue> holding : holdings.values()) {
+            batch.add(WriteRequest.builder().putRequest(PutRequest.builder().item(holding).build()).build());
+            if (batch.size() == BATCH_SIZE) {
+                writeBatch(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Rebuilt {} holdings from {} trades in {} ms", holdings.size(), trades, elapsed);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("trades", trades);
+        result.put("holdings", holdings.size());
+        result.put("elapsedMillis", elapsed);
+        return result;
+    }
+
+    private void writeBatch(List<WriteRequest> batch) {
+        Map<String, List<WriteRequest>> pending = Map.of(CommonUtils.HOLDINGS, batch);
+        int attempt = 0;
+        while (!pending.isEmpty()) {
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder().requestItems(pending).build());
+            pending = response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of();
+            if (!pending.isEmpty()) {
+                backoff(++attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(1000L, 50L << Math.min(attempt, 5)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rebuilding holdings");
+        }
+    }
+
+    private String stringOf(AttributeValue value) {
+        return value == null ? null : value.s();
+    }
+
+    private String numberOf(AttributeValue value) {
+        return value == null || value.n() == null ? "0" : value.n();
+    }
+
+    // trades written before timestamps were formatted stored epoch millis
+    private String timestampOf(AttributeValue value) {
+        if (value == null) return null;
+        if (value.s() != null) return value.s();
+        if (value.n() != null) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(value.n())), ZoneId.systemDefault())
+                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,360 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.exception.IdempotencyConflictException;
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.ConcurrentCalls;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a money-moving request at most once per Idempotency-Key.
+ * The first request for a key claims it with a conditional put on the idempotency table, runs,
+ * and stores its response; a repeat of the key (a gateway retry or a hedged request) gets that
+ * stored response back instead of running again. Completed responses are also kept in a bounded
+ * in-process LRU, and a repeat arriving while the first request is still running on this instance
+ * waits for it, so hot keys do not go back to DynamoDB.
+ * A key reused with a different request body is rejected, as is a repeat whose first request is
+ * still running on another instance after in-progress-wait-ms.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String KEY = "idempotency_key";
+    private static final String STATE = "state";
+    private static final String OWNER = "owner";
+    private static final String REQUEST_HASH = "request_hash";
+    private static final String RESPONSE = "response";
+    private static final String EXPIRES_AT = "expires_at";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+
+    private final DynamoDbClient dynamoDbClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final long ttlSeconds;
+    private final long leaseSeconds;
+    private final long inProgressWaitMillis;
+    private final int maxCached;
+    private final LinkedHashMap<String, Completed> completed;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(DynamoDbClient dynamoDbClient, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.lease-seconds:60}") long leaseSeconds,
+                              @Value("${idempotency.in-progress-wait-ms:3000}") long inProgressWaitMillis,
+                              @Value("${idempotency.cache.max-size:10000}") int maxCached) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.ttlSeconds = ttlHours * 3600;
+        this.leaseSeconds = leaseSeconds;
+        this.inProgressWaitMillis = inProgressWaitMillis;
+        this.maxCached = maxCached;
+        this.completed = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Completed> eldest) {
+                return size() > IdempotencyService.this.maxCached;
+            }
+        };
+    }
+
+    /** The response body and whether it was replayed from an earlier request with the same key. */
+    public record Outcome<T>(T body, boolean replayed) {
+    }
+
+    /**
+     * Runs {@code action} unless {@code key} was already used for {@code scope}, in which case the
+     * stored response is returned. Without a key the action simply runs.
+     */
+    public <T> CompletableFuture<Outcome<T>> execute(String key, String scope, Object request, TypeReference<T> responseType,
+                                                     Supplier<CompletableFuture<T>> action) {
+        if (key == null || key.isBlank()) {
+            return run(action).thenApply(body -> new Outcome<>(body, false));
+        }
+        String id = scopedKey(scope, key);
+        String fingerprint = hex(sha256(write(request)));
+
+        Completed cached = cached(id);
+        if (cached != null) {
+            count(scope, "replayed");
+            return CompletableFuture.completedFuture(replay(cached, fingerprint, responseType));
+        }
+
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            // a hedged duplicate on this instance shares the first request's result
+            checkFingerprint(running.fingerprint(), fingerprint);
+            count(scope, "joined");
+            return running.response().thenApply(json -> new Outcome<>(read(json, responseType), true));
+        }
+
+        String owner = UUID.randomUUID().toString();
+        Completed stored;
+        try {
+            stored = claim(id, fingerprint, owner);
+        } catch (RuntimeException e) {
+            abandon(id, mine, e);
+            throw e;
+        }
+        if (stored != null) {
+            remember(id, stored);
+            inFlight.remove(id, mine);
+            mine.response().complete(stored.response());
+            count(scope, "replayed");
+            return CompletableFuture.completedFuture(replay(stored, fingerprint, responseType));
+        }
+
+        count(scope, "executed");
+        return run(action)
+                .handle((body, failure) -> ConcurrentCalls.async(() -> finish(id, owner, fingerprint, mine, body, failure)))
+                .thenCompose(Function.identity())
+                .thenApply(body -> new Outcome<>(body, false));
+    }
+
+    /**
+     * A DynamoDB ClientRequestToken (at most 36 characters) derived from the key, so a retried
+     * TransactWriteItems within DynamoDB's own ten-minute window is not applied twice either.
+     * Null without a key.
+     */
+    public static String requestToken(String scope, String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        return hex(sha256(scopedKey(scope, key).getBytes(StandardCharsets.UTF_8))).substring(0, 32);
+    }
+
+    private static String scopedKey(String scope, String key) {
+        String trimmed = key.trim();
+        if (trimmed.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        return scope + "#" + trimmed;
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> action) {
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Claims the key, or returns the stored response when it is already completed. A claim that
+     * is still in progress is polled with backoff; one whose lease ran out (its instance died
+     * mid-request) can be claimed again.
+     */
+    private Completed claim(String id, String fingerprint, String owner) {
+        long deadline = System.currentTimeMillis() + inProgressWaitMillis;
+        long backoff = 25;
+        while (true) {
+            long now = epochSeconds();
+            Map<String, AttributeValue> item = HashMap.newHashMap(5);
+            item.put(KEY, AttributeValue.fromS(id));
+            item.put(STATE, AttributeValue.fromS(IN_PROGRESS));
+            item.put(OWNER, AttributeValue.fromS(owner));
+            item.put(REQUEST_HASH, AttributeValue.fromS(fingerprint));
+            item.put(EXPIRES_AT, AttributeValue.fromN(Long.toString(now + leaseSeconds)));
+            try {
+                dynamoDbClient.putItem(PutItemRequest.builder()
+                        .tableName(CommonUtils.IDEMPOTENCY)
+                        .item(item)
+                        .conditionExpression("attribute_not_exists(" + KEY + ") OR " + EXPIRES_AT + " < :now")
+                        .expressionAttributeValues(Map.of(":now", AttributeValue.fromN(Long.toString(now))))
+                        .build());
+                return null;
+            } catch (ConditionalCheckFailedException e) {
+                // someone else holds the key, see below
+            }
+
+            Map<String, AttributeValue> existing = dynamoDbClient.getItem(GetItemRequest.builder()
+                    .tableName(CommonUtils.IDEMPOTENCY)
+                    .key(Map.of(KEY, AttributeValue.fromS(id)))
+                    .consistentRead(true)
+                    .build()).item();
+            if (existing != null && COMPLETED.equals(stringOf(existing.get(STATE)))) {
+                return new Completed(stringOf(existing.get(REQUEST_HASH)), stringOf(existing.get(RESPONSE)),
+                        Long.parseLong(existing.get(EXPIRES_AT).n()) * 1000);
+            }
+            if (existing != null) {
+                checkFingerprint(stringOf(existing.get(REQUEST_HASH)), fingerprint);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyConflictException("A request with this " + HEADER + " is still being processed, retry later");
+            }
+            sleep(backoff);
+            backoff = Math.min(backoff * 2, 500);
+        }
+    }
+
+    // runs on a virtual thread: records the outcome in the table and hands it to joined duplicates
+    private <T> T finish(String id, String owner, String fingerprint, InFlight mine, T body, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = ConcurrentCalls.unwrap(failure);
+            release(id, owner);
+            abandon(id, mine, cause);
+            throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+        }
+
+        String json = writeString(body);
+        long expiresAt = epochSeconds() + ttlSeconds;
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(CommonUtils.IDEMPOTENCY)
+                    .key(Map.of(KEY, AttributeValue.fromS(id)))
+                    .updateExpression("SET #state = :completed, #response = :response, " + EXPIRES_AT + " = :expires")
+                    .conditionExpression("#owner = :owner")
+                    .expressionAttributeNames(Map.of("#state", STATE, "#response", RESPONSE, "#owner", OWNER))
+                    .expressionAttributeValues(Map.of(
+                            ":completed", AttributeValue.fromS(COMPLETED),
+                            ":response", AttributeValue.fromS(json),
+                            ":expires", AttributeValue.fromN(Long.toString(expiresAt)),
+                            ":owner", AttributeValue.fromS(owner)))
+                    .build());
+        } catch (DynamoDbException e) {
+            // the operation itself succeeded; only a retry after the lease expires could repeat it
+            log.error("Could not record the response for idempotency key {}", id, e);
+        }
+        remember(id, new Completed(fingerprint, json, expiresAt * 1000));
+        inFlight.remove(id, mine);
+        mine.response().complete(json);
+        return body;
+    }
+
+    // a failed request frees its key so the client can retry it
+    private void release(String id, String owner) {
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(CommonUtils.IDEMPOTENCY)
+                    .key(Map.of(KEY, AttributeValue.fromS(id)))
+                    .conditionExpression("#owner = :owner AND #state = :inProgress")
+                    .expressionAttributeNames(Map.of("#owner", OWNER, "#state", STATE))
+                    .expressionAttributeValues(Map.of(
+                            ":owner", AttributeValue.fromS(owner),
+                            ":inProgress", AttributeValue.fromS(IN_PROGRESS)))
+                    .build());
+        } catch (DynamoDbException e) {
+            log.warn("Could not release idempotency key {}, it frees up when its lease expires: {}", id, e.getMessage());
+        }
+    }
+
+    private void abandon(String id, InFlight mine, Throwable cause) {
+        inFlight.remove(id, mine);
+        mine.response().completeExceptionally(cause);
+    }
+
+    private <T> Outcome<T> replay(Completed stored, String fingerprint, TypeReference<T> responseType) {
+        checkFingerprint(stored.fingerprint(), fingerprint);
+        return new Outcome<>(read(stored.response(), responseType), true);
+    }
+
+    private void checkFingerprint(String stored, String fingerprint) {
+        if (stored != null && !stored.equals(fingerprint)) {
+            throw new IllegalArgumentException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private Completed cached(String id) {
+        long now = System.currentTimeMillis();
+        synchronized (completed) {
+            Completed entry = completed.get(id);
+            if (entry != null && entry.expiresAtMillis() <= now) {
+                completed.remove(id);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void remember(String id, Completed entry) {
+        synchronized (completed) {
+            completed.put(id, entry);
+        }
+    }
+
+    private void count(String scope, String outcome) {
+        meterRegistry.counter("idempotency.requests", "scope", scope, "outcome", outcome).increment();
+    }
+
+    private byte[] write(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize idempotent request");
+        }
+    }
+
+    private String writeString(Object value) {
+        return new String(write(value), StandardCharsets.UTF_8);
+    }
+
+    private <T> T read(String json, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read stored idempotent response");
+        }
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static String stringOf(AttributeValue value) {
+        return value == null ? null : value.s();
+    }
+
+    private static long epochSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an idempotent request");
+        }
+    }
+
+    private record Completed(String fingerprint, String response, long expiresAtMillis) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<String> response) {
+    }
+}
@@ -1,6 +1,5 @@
 package com.wmn.backend.service;
 
-import com.wmn.backend.utils.CommonUtils;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.lambda.LambdaClient;
@@ -12,10 +11,8 @@ public class LambdaService {
 
     private final LambdaClient lambdaClient;
 
-    public LambdaService() {
-        this.lambdaClient = LambdaClient.builder()
-                .region(CommonUtils.REGION)
-                .build();
+    public LambdaService(LambdaClient lambdaClient) {
+        this.lambdaClient = lambdaClient;
     }
 
     public String invokeLambda() {
@@ -0,0 +1,501 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind pipeline for append-only ledger records (transaction and trade items).
+ * Records are appended to a local spill journal, queued, and written by a single flusher thread
+ * in BatchWriteItem calls of up to 25 items, flushed when a batch is full or the flush
+ * interval elapses. The journal is replayed on startup, so records accepted before a crash
+ * are still written; replays are idempotent because every record carries its own key.
+ * When the queue is full the caller falls back to a synchronous PutItem.
+ * Records are acknowledged once journaled, so they become visible in reads only after the flush.
+ * Appends are group committed: a submitter writes its record under the journal lock and then
+ * waits for a force of the journal, and one force covers every record appended before it
+ * started, so concurrent submitters share a single fsync. A batch that cannot be written is
+ * retried with backoff until it succeeds.
+ * The journal is a series of segment files (spill-file.1, spill-file.2, ...) rolled once the
+ * active one reaches segment-bytes. Records are journaled and flushed in the same order, so a
+ * flushed record checkpoints every segment before its own, and those are deleted; replay streams
+ * the remaining segments, so at most the unflushed tail plus one segment is written twice.
+ */
+@Slf4j
+@Component
+public class LedgerWriteBehind implements MeterBinder {
+
+    private static final int MAX_BATCH = 25;
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final BlockingQueue<PendingWrite> queue;
+    private final long segmentBytes;
+    private final Path spillFile;
+    private final ReentrantLock journalLock = new ReentrantLock();
+    // held by the submitter forcing the journal, and while rolling to a new segment; the other
+    // submitters wait on it and usually find their record covered
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private FileChannel journal;
+    // segment being appended to and the bytes in it, guarded by journalLock
+    private long activeSegment;
+    private long activeSegmentBytes;
+    // oldest segment that may still hold unflushed records, only touched by the flusher (and by shutdown once it stopped)
+    private long oldestSegment;
+    private Thread flusher;
+    private volatile boolean running;
+    // bytes ever appended to / forced in the journal; positions keep growing across segments
+    private volatile long appendedBytes;
+    private volatile long syncedBytes;
+    // set while a batch cannot be written; no segment is deleted past the failing batch
+    private volatile boolean journalPinned;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong itemsFlushed = new AtomicLong();
+    private final AtomicLong batchesFlushed = new AtomicLong();
+    private final AtomicLong unprocessedRetries = new AtomicLong();
+    private final AtomicLong synchronousFallbacks = new AtomicLong();
+    private final AtomicLong journalForces = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public LedgerWriteBehind(DynamoDbClient dynamoDbClient, ObjectMapper objectMapper,
+                             @Value("${ledger.write-behind.enabled:false}") boolean enabled,
+                             @Value("${ledger.write-behind.queue-capacity:10000}") int queueCapacity,
+                             @Value("${ledger.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+                             @Value("${ledger.write-behind.spill-file:data/ledger-spill.log}") String spillFile,
+                             @Value("${ledger.write-behind.segment-bytes:8388608}") long segmentBytes) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spillFile = Paths.get(spillFile);
+        this.segmentBytes = segmentBytes;
+
+        if (enabled) {
+            start();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (String stat : List.of("queueDepth", "inFlight", "itemsFlushed", "batchesFlushed", "unprocessedRetries",
+                "synchronousFallbacks", "journalForces", "flushFailures", "journalPinned", "avgFlushMillis", "maxFlushMillis")) {
+            Gauge.builder("ledger.write.behind", this, w -> ((Number) w.stats().get(stat)).doubleValue())
+                    .tag("stat", stat)
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Accepts a record for asynchronous writing. Returns false when the pipeline is disabled
+     * or saturated, in which case the caller must write the record itself.
+     */
+    public boolean submit(String tableName, Map<String, AttributeValue> item) {
+        if (!enabled) {
+            return false;
+        }
+        long position;
+        // only submitters add to the queue and they do so under the lock, so the capacity check holds
+        journalLock.lock();
+        try {
+            if (queue.remainingCapacity() == 0) {
+                synchronousFallbacks.incrementAndGet();
+                return false;
+            }
+            if (activeSegmentBytes >= segmentBytes) {
+                rollSegment();
+            }
+            PendingWrite write = new PendingWrite(tableName, item, activeSegment);
+            position = appendToJournal(write);
+            inFlight.incrementAndGet();
+            queue.add(write);
+        } finally {
+            journalLock.unlock();
+        }
+        awaitDurable(position);
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        long batches = batchesFlushed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queueDepth", queue.size());
+        stats.put("inFlight", inFlight.get());
+        stats.put("itemsFlushed", itemsFlushed.get());
+        stats.put("batchesFlushed", batches);
+        stats.put("unprocessedRetries", unprocessedRetries.get());
+        stats.put("synchronousFallbacks", synchronousFallbacks.get());
+        stats.put("journalForces", journalForces.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("journalPinned", journalPinned ? 1 : 0);
+        stats.put("avgFlushMillis", batches == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / batches);
+        stats.put("maxFlushMillis", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        journalLock.lock();
+        try {
+            truncateJournalIfDrained();
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Could not close spill file {}", segmentPath(activeSegment), e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private void start() {
+        try {
+            if (spillFile.getParent() != null) {
+                Files.createDirectories(spillFile.getParent());
+            }
+            List<Path> replay = journalSegments();
+            activeSegment = replay.isEmpty() ? 1 : segmentNumber(replay.get(replay.size() - 1)) + 1;
+            oldestSegment = activeSegment;
+            journal = openSegment(activeSegment);
+            running = true;
+            flusher = Thread.ofPlatform().name("ledger-write-behind").daemon().start(() -> runFlusher(replay));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open write-behind spill file " + spillFile, e);
+        }
+    }
+
+    // segments left by the previous run are still unflushed, so they are written first and retried like any batch
+    private void runFlusher(List<Path> replay) {
+        for (Path segment : replay) {
+            if (!running || !replaySegment(segment)) {
+                break;
+            }
+        }
+
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    journalLock.lock();
+                    try {
+                        truncateJournalIfDrained();
+                    } finally {
+                        journalLock.unlock();
+                    }
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < MAX_BATCH) {
+                    PendingWrite next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                if (!flushWithRetry(batch)) {
+                    // given up at shutdown: what is still queued stays journaled behind it for replay
+                    return;
+                }
+                deleteSegmentsBefore(batch.get(batch.size() - 1).segment());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /*
+     * Keeps the batch until it is written, backing off between attempts; while it fails new
+     * records queue up behind it and submitters fall back to synchronous puts once the queue is
+     * full. Only on shutdown is a failing batch given up, and then its segment and every later
+     * one stay on disk so the batch is replayed on the next start. Returns whether it was written.
+     */
+    private boolean flushWithRetry(List<PendingWrite> batch) {
+        long backoff = 100;
+        while (true) {
+            try {
+                flush(batch);
+                if (journalPinned) {
+                    log.info("Write-behind flushes recovered");
+                    journalPinned = false;
+                }
+                return true;
+            } catch (RuntimeException e) {
+                flushFailures.incrementAndGet();
+                if (!journalPinned) {
+                    log.error("Write-behind flush of {} records failed, retrying and keeping the spill file", batch.size(), e);
+                    journalPinned = true;
+                }
+                if (!running) {
+                    log.error("Giving up on {} write-behind records at shutdown, they stay in {} for replay",
+                            batch.size(), segmentPath(batch.get(0).segment()));
+                    return false;
+                }
+                sleepQuietly(backoff);
+                backoff = Math.min(MAX_RETRY_BACKOFF_MS, backoff * 2);
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        long started = System.nanoTime();
+        Map<String, List<WriteRequest>> pending = new HashMap<>();
+        for (PendingWrite write : batch) {
+            pending.computeIfAbsent(write.tableName(), k -> new ArrayList<>())
+                    .add(WriteRequest.builder().putRequest(PutRequest.builder().item(write.item()).build()).build());
+        }
+
+        int attempt = 0;
+        while (!pending.isEmpty()) {
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder().requestItems(pending).build());
+            pending = response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of();
+            if (!pending.isEmpty()) {
+                unprocessedRetries.incrementAndGet();
+                sleepQuietly(Math.min(1000L, 25L << Math.min(++attempt, 5)));
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        batchesFlushed.incrementAndGet();
+        itemsFlushed.addAndGet(batch.size());
+        inFlight.addAndGet(-batch.size());
+    }
+
+    // caller holds journalLock; returns the journal position just past the record
+    private long appendToJournal(PendingWrite write) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("table", write.tableName());
+        Map<String, Map<String, String>> item = new LinkedHashMap<>();
+        write.item().forEach((name, value) -> item.put(name, value.n() != null ? Map.of("N", value.n()) : Map.of("S", value.s())));
+        record.put("item", item);
+
+        try {
+            byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            activeSegmentBytes += line.length;
+            appendedBytes += line.length;
+            return appendedBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to write-behind spill file", e);
+        }
+    }
+
+    // returns once the journal is forced at least up to position, forcing it here if no one else has
+    private void awaitDurable(long position) {
+        if (syncedBytes >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (syncedBytes >= position) {
+                return;
+            }
+            long target = appendedBytes;
+            journal.force(false);
+            journalForces.incrementAndGet();
+            syncedBytes = target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync write-behind spill file", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /*
+     * Caller holds journalLock. Forces and closes the active segment before appending goes on in
+     * the next one, under syncLock so no submitter is forcing the channel being closed; every record
+     * appended so far is then durable.
+     */
+    private void rollSegment() {
+        syncLock.lock();
+        try {
+            journal.force(false);
+            journalForces.incrementAndGet();
+            syncedBytes = appendedBytes;
+            journal.close();
+            journal = openSegment(activeSegment + 1);
+            activeSegment++;
+            activeSegmentBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll write-behind spill file", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // flusher only; every record journaled before the given segment has been written
+    private void deleteSegmentsBefore(long segment) {
+        for (; oldestSegment < segment; oldestSegment++) {
+            deleteSegment(segmentPath(oldestSegment));
+        }
+    }
+
+    // streams one segment left by a previous run in batches and deletes it once all of it is written
+    private boolean replaySegment(Path segment) {
+        log.info("Replaying ledger records from {}", segment);
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH);
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                PendingWrite write = readRecord(line);
+                if (write == null) continue;
+                batch.add(write);
+                if (batch.size() == MAX_BATCH && !replayBatch(batch)) {
+                    return false;
+                }
+            }
+            if (!batch.isEmpty() && !replayBatch(batch)) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.error("Could not read spill file {}, keeping it for the next start", segment, e);
+            return false;
+        }
+        deleteSegment(segment);
+        return true;
+    }
+
+    private boolean replayBatch(List<PendingWrite> batch) {
+        inFlight.addAndGet(batch.size());
+        boolean written = flushWithRetry(batch);
+        if (!written) {
+            inFlight.addAndGet(-batch.size());
+        }
+        batch.clear();
+        return written;
+    }
+
+    private PendingWrite readRecord(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            Map<String, Object> record = objectMapper.readValue(line, new TypeReference<Map<String, Object>>() {});
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, String>> encoded = (Map<String, Map<String, String>>) record.get("item");
+            Map<String, AttributeValue> item = new HashMap<>();
+            encoded.forEach((name, value) -> item.put(name, value.containsKey("N")
+                    ? AttributeValue.fromN(value.get("N"))
+                    : AttributeValue.fromS(value.get("S"))));
+            return new PendingWrite((String) record.get("table"), item, 0);
+        } catch (IOException e) {
+            // a torn last line from a crash mid-append
+            log.warn("Skipping unreadable spill file record: {}", line);
+            return null;
+        }
+    }
+
+    // segments left on disk, oldest first; a spill file from before segments existed is replayed first
+    private List<Path> journalSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (Files.isRegularFile(spillFile)) {
+            segments.add(spillFile);
+        }
+        Path dir = spillFile.toAbsolutePath().getParent();
+        String prefix = spillFile.getFileName() + ".";
+        try (var files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().startsWith(prefix) && segmentNumber(file) > 0)
+                    .sorted(Comparator.comparingLong(this::segmentNumber))
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        String suffix = name.substring(name.lastIndexOf('.') + 1);
+        boolean numbered = !name.equals(spillFile.getFileName().toString())
+                && !suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit);
+        return numbered ? Long.parseLong(suffix) : 0;
+    }
+
+    private Path segmentPath(long segment) {
+        return spillFile.resolveSibling(spillFile.getFileName() + "." + segment);
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void deleteSegment(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            log.warn("Could not delete spill file {}", segment, e);
+        }
+    }
+
+    // caller holds journalLock; with nothing left to write every sealed segment goes and the active one is emptied
+    private void truncateJournalIfDrained() {
+        if (journalPinned || inFlight.get() != 0 || !queue.isEmpty()) {
+            return;
+        }
+        deleteSegmentsBefore(activeSegment);
+        try {
+            if (activeSegmentBytes > 0) {
+                journal.truncate(0);
+                activeSegmentBytes = 0;
+            }
+        } catch (IOException e) {
+            log.warn("Could not truncate spill file {}", segmentPath(activeSegment), e);
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingWrite(String tableName, Map<String, AttributeValue> item, long segment) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.service.AnalyticsAggregates.*;
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Produces the analytics report inside the application instead of through Lambda and Glue.
+ * The transaction, Portfolio_Transaction and user tables are read with parallel segmented scans,
+ * aggregated on a fork/join pool and written as XLSX with a streaming (SXSSF) writer that only keeps
+ * a small window of rows in memory. The report is uploaded next to the Glue output and the
+ * manifest is pointed at it, so /analytics/download serves it like any other report.
+ */
+@Slf4j
+@Service
+public class LocalAnalyticsEngine {
+
+    private static final int ROW_WINDOW = 100;
+    private static final DateTimeFormatter REPORT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final DynamoDbClient dynamoDbClient;
+    private final S3Client s3Client;
+    private final ReportManifest reportManifest;
+    private final ReportCache reportCache;
+    private final int scanSegments;
+    private final int topTraders;
+
+    public LocalAnalyticsEngine(DynamoDbClient dynamoDbClient, S3Client s3Client, ReportManifest reportManifest,
+                                ReportCache reportCache,
+                                @Value("${analytics.local.scan-segments:8}") int scanSegments,
+                                @Value("${analytics.local.top-traders:20}") int topTraders) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.s3Client = s3Client;
+        this.reportManifest = reportManifest;
+        this.reportCache = reportCache;
+        this.scanSegments = scanSegments;
+        this.topTraders = topTraders;
+    }
+
+    /** Runs the whole pipeline and returns the uploaded report. */
+    public S3Object run() {
+        long started = System.currentTimeMillis();
+
+        Ledger ledger;
+        Trades trades;
+        Users users;
+        // scan leaves block on DynamoDB, so they get their own pool rather than the common one
+        ForkJoinPool pool = new ForkJoinPool(scanSegments);
+        try {
+            ForkJoinTask<Ledger> ledgerScan = pool.submit(() -> scan(pool, CommonUtils.TRANSACTION, Ledger::new));
+            ForkJoinTask<Trades> tradeScan = pool.submit(() -> scan(pool, CommonUtils.PORTFOLIO, Trades::new));
+            ForkJoinTask<Users> userScan = pool.submit(() -> scan(pool, CommonUtils.USER, Users::new));
+            ledger = ledgerScan.join();
+            trades = tradeScan.join();
+            users = userScan.join();
+        } finally {
+            pool.shutdown();
+        }
+        long scanned = System.currentTimeMillis();
+
+        Path file = null;
+        try {
+            file = Files.createTempFile("analytics-", ".xlsx");
+            try (OutputStream out = Files.newOutputStream(file)) {
+                writeReport(ledger, trades, users, topTraders, out);
+            }
+
+            String key = CommonUtils.FOLDER_PREFIX + "local-analytics-" + LocalDateTime.now().format(REPORT_NAME) + ".xlsx";
+            PutObjectResponse uploaded = s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(CommonUtils.BUCKET_NAME)
+                            .key(key)
+                            .contentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                            .build(),
+                    RequestBody.fromFile(file));
+
+            S3Object report = S3Object.builder()
+                    .key(key)
+                    .eTag(uploaded.eTag())
+                    .size(Files.size(file))
+                    .lastModified(Instant.now())
+                    .build();
+            reportManifest.publish(report);
+            reportCache.adopt(report, file);
+            file = null;
+
+            log.info("Local analytics report {} ({} bytes): {} ledger records, {} trades, {} users; scan {} ms, total {} ms",
+                    key, report.size(), ledger.records, trades.records, users.byId.size(),
+                    scanned - started, System.currentTimeMillis() - started);
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}", file);
+                }
+            }
+        }
+    }
+
+    private <A extends Accumulator<A>> A scan(ForkJoinPool pool, String table, Supplier<A> factory) {
+        return AnalyticsAggregates.aggregate(pool, scanSegments, factory, (segment, accumulator) ->
+                dynamoDbClient.scanPaginator(ScanRequest.builder()
+                                .tableName(table)
+                                .segment(segment)
+                                .totalSegments(scanSegments)
+                                .build())
+                        .items()
+                        .forEach(accumulator::add));
+    }
+
+    /** Writes the report workbook; only ROW_WINDOW rows per sheet are held in memory at a time. */
+    public static void writeReport(Ledger ledger, Trades trades, Users users, int topTraders, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet summary = workbook.createSheet("Summary");
+            row(summary, 0, "Metric", "Value");
+            row(summary, 1, "Ledger records", ledger.records);
+            row(summary, 2, "Stock trades", trades.records);
+            row(summary, 3, "Users", users.byId.size());
+            row(summary, 4, "Generated at", CommonUtils.getcurrentTimeStamp());
+
+            SXSSFSheet volume = workbook.createSheet("User_Volume");
+            row(volume, 0, "User Id", "Username", "Transactions", "Debits", "Credits", "Volume");
+            int r = 1;
+            for (Map.Entry<String, Flow> entry : ledger.byUser.entrySet()) {
+                Flow flow = entry.getValue();
+                row(volume, r++, entry.getKey(), username(users, entry.getKey()), flow.count,
+                        money(flow.debitCents), money(flow.creditCents), money(flow.volumeCents()));
+            }
+
+            SXSSFSheet stocks = workbook.createSheet("Stock_Net_Flow");
+            row(stocks, 0, "Stock", "Trades", "Bought Qty", "Sold Qty", "Net Qty", "Bought", "Sold", "Net Flow");
+            r = 1;
+            for (Map.Entry<String, StockFlow> entry : trades.byStock.entrySet()) {
+                StockFlow flow = entry.getValue();
+                row(stocks, r++, entry.getKey(), flow.trades, flow.buyQuantity, flow.sellQuantity,
+                        flow.buyQuantity - flow.sellQuantity, money(flow.buyCents), money(flow.sellCents),
+                        money(flow.buyCents - flow.sellCents));
+            }
+
+            SXSSFSheet daily = workbook.createSheet("Daily_Totals");
+            row(daily, 0, "Date", "Transactions", "Debits", "Credits");
+            r = 1;
+            for (Map.Entry<String, Flow> entry : ledger.byDay.entrySet()) {
+                Flow flow = entry.getValue();
+                row(daily, r++, entry.getKey(), flow.count, money(flow.debitCents), money(flow.creditCents));
+            }
+
+            SXSSFSheet top = workbook.createSheet("Top_Traders");
+            row(top, 0, "Rank", "User Id", "Username", "Role", "Balance", "Volume");
+            List<Map.Entry<String, Flow>> ranked = ledger.byUser.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, Flow> e) -> e.getValue().volumeCents()).reversed())
+                    .limit(topTraders)
+                    .toList();
+            r = 1;
+            for (Map.Entry<String, Flow> entry : ranked) {
+                UserRow user = users.byId.get(entry.getKey());
+                row(top, r, r, entry.getKey(), user == null ? "" : user.username(), user == null ? "" : user.role(),
+                        user == null ? 0.0 : money(user.balanceCents()), money(entry.getValue().volumeCents()));
+                r++;
+            }
+
+            workbook.write(out);
+        } finally {
+            // removes the temporary files backing the flushed rows
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static void row(SXSSFSheet sheet, int index, Object... values) {
+        Row row = sheet.createRow(index);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value instanceof Number number) {
+                row.createCell(i).setCellValue(number.doubleValue());
+            } else {
+                row.createCell(i).setCellValue(value == null ? "" : value.toString());
+            }
+        }
+    }
+
+    private static String username(Users users, String userId) {
+        UserRow user = users.byId.get(userId);
+        return user == null ? "" : user.username();
+    }
+
+    private static double money(long cents) {
+        return Money.toDouble(cents);
+    }
+}
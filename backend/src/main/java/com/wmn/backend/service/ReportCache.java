@@ -0,0 +1,188 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.ConcurrentCalls;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * On-disk copies of analytics reports, one file per S3 key and ETag, so a report that has not
+ * changed is served from local disk instead of being downloaded from S3 again.
+ * Files unused for max-age are dropped, then the least recently used ones until the cache fits max-mb.
+ */
+@Slf4j
+@Component
+public class ReportCache {
+
+    private final S3Client s3Client;
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration maxAge;
+    private final Map<String, ReentrantLock> fetchLocks = new ConcurrentHashMap<>();
+
+    public ReportCache(S3Client s3Client,
+                       @Value("${analytics.report-cache.enabled:true}") boolean enabled,
+                       @Value("${analytics.report-cache.dir:data/report-cache}") String directory,
+                       @Value("${analytics.report-cache.max-mb:1024}") long maxMb,
+                       @Value("${analytics.report-cache.max-age-hours:72}") long maxAgeHours) {
+        this.s3Client = s3Client;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxMb * 1024 * 1024;
+        this.maxAge = Duration.ofHours(maxAgeHours);
+    }
+
+    /** Opens the cached copy of this exact report version, if there is one. */
+    public Optional<FileChannel> open(S3Object report) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Path file = fileFor(report);
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            // last-modified doubles as last-used for eviction
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return Optional.of(channel);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Could not open cached report {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /** Downloads the report into the cache unless it is already there. */
+    public void fetch(S3Object report) {
+        if (!enabled) {
+            return;
+        }
+        Path file = fileFor(report);
+        ReentrantLock lock = fetchLocks.computeIfAbsent(file.getFileName().toString(), k -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (Files.isRegularFile(file)) {
+                return;
+            }
+            Files.createDirectories(directory);
+            Path partial = directory.resolve(file.getFileName() + ".part");
+            Files.deleteIfExists(partial);
+
+            // If-Match: never store bytes of a newer version under this ETag
+            s3Client.getObject(GetObjectRequest.builder()
+                            .bucket(CommonUtils.BUCKET_NAME)
+                            .key(report.key())
+                            .ifMatch(report.eTag())
+                            .build(),
+                    ResponseTransformer.toFile(partial));
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Cached report {} ({} bytes)", report.key(), report.size());
+
+            evict(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes ownership of a locally produced copy of the report instead of downloading it again. */
+    public void adopt(S3Object report, Path source) throws IOException {
+        if (!enabled) {
+            Files.deleteIfExists(source);
+            return;
+        }
+        Files.createDirectories(directory);
+        Path file = fileFor(report);
+        Files.move(source, file, StandardCopyOption.REPLACE_EXISTING);
+        evict(file);
+    }
+
+    /** Fetches the report in the background; failures are only logged. */
+    public void prefetch(S3Object report) {
+        if (!enabled) {
+            return;
+        }
+        ConcurrentCalls.async(() -> {
+            fetch(report);
+            return null;
+        }).exceptionally(e -> {
+            log.warn("Prefetch of report {} failed", report.key(), ConcurrentCalls.unwrap(e));
+            return null;
+        });
+    }
+
+    /**
+     * Sends count bytes from position of the cached file. The servlet output stream is not a
+     * channel, so the JDK wraps it and copies through a small heap buffer; the gain over
+     * streaming from S3 is skipping the download, not avoiding the copy.
+     */
+    public static long transferTo(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long sent = 0;
+        while (sent < count) {
+            long written = channel.transferTo(position + sent, count - sent, target);
+            if (written <= 0) {
+                break;
+            }
+            sent += written;
+        }
+        out.flush();
+        return sent;
+    }
+
+    private void evict(Path keep) throws IOException {
+        List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) listing::iterator) {
+                if (path.getFileName().toString().endsWith(".part")) continue;
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime().toInstant()));
+            }
+        }
+        files.sort(Comparator.comparing(CachedFile::lastUsed));
+
+        long total = files.stream().mapToLong(CachedFile::size).sum();
+        Instant cutoff = Instant.now().minus(maxAge);
+        for (CachedFile cached : files) {
+            if (cached.path().equals(keep)) continue;
+            if (cached.lastUsed().isBefore(cutoff) || total > maxBytes) {
+                // open channels keep reading a deleted file, so in-flight downloads are unaffected
+                Files.deleteIfExists(cached.path());
+                total -= cached.size();
+                log.info("Evicted cached report {}", cached.path().getFileName());
+            }
+        }
+    }
+
+    private Path fileFor(S3Object report) {
+        String key = Base64.getUrlEncoder().withoutPadding().encodeToString(report.key().getBytes(StandardCharsets.UTF_8));
+        String etag = report.eTag() == null ? "none" : report.eTag().replace("\"", "");
+        return directory.resolve(key + "-" + etag);
+    }
+
+    private record CachedFile(Path path, long size, Instant lastUsed) {
+    }
+}
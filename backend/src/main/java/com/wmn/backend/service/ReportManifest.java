@@ -0,0 +1,176 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.utils.CommonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pointer to the newest analytics report, stored as a small JSON object next to the reports.
+ * Resolving the latest report is one GetObject of the manifest (and usually not even that, the
+ * result is cached in-process for cache-ttl-seconds) instead of a listing of the whole output prefix.
+ * The Glue jobs (scripts/gluejob_v*.py) write the manifest when they upload a report, and this
+ * application does so when a run it watched has finished. It is only rebuilt from a listing when
+ * it is missing, unusable (no key, lastModified or updatedAt) or older than max-age-minutes; the
+ * rebuilt manifest is shared, so that is about one listing per period for all instances together,
+ * a backstop for a job that did not write the manifest.
+ */
+@Slf4j
+@Component
+public class ReportManifest {
+
+    static final String MANIFEST_KEY = "analytics-manifest/latest.json";
+
+    private final S3Client s3Client;
+    private final ObjectMapper objectMapper;
+    private final long cacheTtlMillis;
+    private final Duration maxAge;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Cached cached;
+
+    public ReportManifest(S3Client s3Client, ObjectMapper objectMapper,
+                          @Value("${analytics.manifest.cache-ttl-seconds:30}") long cacheTtlSeconds,
+                          @Value("${analytics.manifest.max-age-minutes:60}") long maxAgeMinutes) {
+        this.s3Client = s3Client;
+        this.objectMapper = objectMapper;
+        this.cacheTtlMillis = cacheTtlSeconds * 1000;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+    }
+
+    /** Latest non-empty report, if any. */
+    public Optional<S3Object> latest() {
+        Cached current = cached;
+        if (current != null && current.expiresAt() > System.currentTimeMillis()) {
+            return current.report();
+        }
+
+        refreshLock.lock();
+        try {
+            current = cached;
+            if (current != null && current.expiresAt() > System.currentTimeMillis()) {
+                return current.report();
+            }
+            Optional<Manifest> manifest = read().filter(this::isFresh);
+            return manifest.isPresent() ? remember(Optional.of(manifest.get().toS3Object())) : rebuild();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /** Finds the newest report with a full listing and rewrites the manifest to point at it. */
+    public Optional<S3Object> rebuild() {
+        Optional<S3Object> latest = listLatest();
+        latest.ifPresent(this::write);
+        return remember(latest);
+    }
+
+    /** Points the manifest at a report this application has just produced. */
+    public void publish(S3Object report) {
+        write(report);
+        remember(Optional.of(report));
+    }
+
+    // a manifest missing a field (hand-written, older format) or with unparseable times is rebuilt
+    private boolean isFresh(Manifest manifest) {
+        Instant updatedAt = parseInstant(manifest.updatedAt());
+        return manifest.key() != null
+                && parseInstant(manifest.lastModified()) != null
+                && updatedAt != null
+                && updatedAt.isAfter(Instant.now().minus(maxAge));
+    }
+
+    private static Instant parseInstant(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private Optional<S3Object> remember(Optional<S3Object> report) {
+        cached = new Cached(report, System.currentTimeMillis() + cacheTtlMillis);
+        return report;
+    }
+
+    private Optional<S3Object> listLatest() {
+        try {
+            List<S3Object> objectSummaries = CommonUtils.listFilesInFolder(s3Client, CommonUtils.BUCKET_NAME, CommonUtils.FOLDER_PREFIX);
+
+            Optional<S3Object> latestObject = objectSummaries.stream()
+                    .filter(obj -> obj.size() > 0)
+                    .max(Comparator.comparing(S3Object::lastModified));
+
+            if (latestObject.isEmpty()) {
+                log.info("No files found in the specified S3 folder.");
+            } else {
+                log.info("Latest file identified: {} (Last Modified: {})", latestObject.get().key(), latestObject.get().lastModified());
+            }
+            return latestObject;
+        } catch (S3Exception e) {
+            log.warn("Could not list S3 folder {}/{}", CommonUtils.BUCKET_NAME, CommonUtils.FOLDER_PREFIX, e);
+            throw new RuntimeException("S3 object not found or access denied");
+        }
+    }
+
+    private Optional<Manifest> read() {
+        try {
+            byte[] json = s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                    .bucket(CommonUtils.BUCKET_NAME)
+                    .key(MANIFEST_KEY)
+                    .build()).asByteArray();
+            return Optional.of(objectMapper.readValue(json, Manifest.class));
+        } catch (NoSuchKeyException e) {
+            log.info("No report manifest at {}/{}, rebuilding it from a listing", CommonUtils.BUCKET_NAME, MANIFEST_KEY);
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Unreadable report manifest {}/{}, rebuilding it", CommonUtils.BUCKET_NAME, MANIFEST_KEY, e);
+            return Optional.empty();
+        }
+    }
+
+    private void write(S3Object report) {
+        Manifest manifest = new Manifest(report.key(), report.eTag(), report.size(),
+                report.lastModified().toString(), Instant.now().toString());
+        try {
+            s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(CommonUtils.BUCKET_NAME)
+                            .key(MANIFEST_KEY)
+                            .contentType("application/json")
+                            .build(),
+                    RequestBody.fromBytes(objectMapper.writeValueAsBytes(manifest)));
+        } catch (IOException | S3Exception e) {
+            // the listing result is still served, the manifest is retried on the next rebuild
+            log.warn("Could not write report manifest {}/{}", CommonUtils.BUCKET_NAME, MANIFEST_KEY, e);
+        }
+    }
+
+    record Manifest(String key, String eTag, long size, String lastModified, String updatedAt) {
+        S3Object toS3Object() {
+            return S3Object.builder()
+                    .key(key)
+                    .eTag(eTag)
+                    .size(size)
+                    .lastModified(Instant.parse(lastModified))
+                    .build();
+        }
+    }
+
+    private record Cached(Optional<S3Object> report, long expiresAt) {
+    }
+}
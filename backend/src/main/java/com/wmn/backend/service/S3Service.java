@@ -1,7 +1,5 @@
 package com.wmn.backend.service;
-import com.wmn.backend.utils.CommonUtils;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
@@ -14,11 +12,8 @@ public class S3Service {
 
     private final S3Client s3Client;
 
-    public S3Service() {
-        this.s3Client = S3Client.builder()
-                .region(CommonUtils.REGION)
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+    public S3Service(S3Client s3Client) {
+        this.s3Client = s3Client;
     }
 
     public String downloadFile(String bucketName, String key, String downloadPath) {
@@ -0,0 +1,116 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.utils.CommonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out monotonically increasing numbers from named counters in the sequence table.
+ * Each call to DynamoDB reserves a whole block with one atomic UpdateItem, the block is then
+ * served from memory, so concurrent instances never hand out the same value. Counters read one
+ * value at a time (block size 1, e.g. one per username) keep nothing in memory.
+ */
+@Slf4j
+@Component
+public class SequenceAllocator {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public SequenceAllocator(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    /**
+     * Returns the next value of {@code sequence}, reserving {@code blockSize} values at a time.
+     * {@code seed} supplies the last value already in use and is only called the first time
+     * a counter is created.
+     */
+    public long next(String sequence, int blockSize, LongSupplier seed) {
+        if (blockSize == 1) {
+            return reserve(sequence, 1, seed);
+        }
+        Block block = blocks.computeIfAbsent(sequence, k -> new Block());
+        // not synchronized: a virtual thread must not pin its carrier across the reserve call
+        block.lock.lock();
+        try {
+            if (block.next > block.end) {
+                long end = reserve(sequence, blockSize, seed);
+                block.next = end - blockSize + 1;
+                block.end = end;
+            }
+            return block.next++;
+        } finally {
+            block.lock.unlock();
+        }
+    }
+
+    /** Whether the counter has been created; a strongly consistent read. */
+    public boolean exists(String sequence) {
+        return dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(CommonUtils.SEQUENCE)
+                .key(Map.of("counter_name", AttributeValue.fromS(sequence)))
+                .consistentRead(true)
+                .build()).hasItem();
+    }
+
+    /** Moves the counter up to {@code value}, creating it if needed; a counter already past it is left alone. */
+    public void raise(String sequence, long value) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(CommonUtils.SEQUENCE)
+                    .key(Map.of("counter_name", AttributeValue.fromS(sequence)))
+                    .updateExpression("SET counter_value = :value")
+                    .conditionExpression("attribute_not_exists(counter_value) OR counter_value < :value")
+                    .expressionAttributeValues(Map.of(":value", AttributeValue.fromN(Long.toString(value))))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            // already at or past value
+        }
+    }
+
+    private long reserve(String sequence, int blockSize, LongSupplier seed) {
+        Map<String, AttributeValue> key = Map.of("counter_name", AttributeValue.fromS(sequence));
+        AttributeValue size = AttributeValue.fromN(Integer.toString(blockSize));
+
+        UpdateItemResponse response;
+        try {
+            response = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(CommonUtils.SEQUENCE)
+                    .key(key)
+                    .updateExpression("SET counter_value = counter_value + :size")
+                    .conditionExpression("attribute_exists(counter_value)")
+                    .expressionAttributeValues(Map.of(":size", size))
+                    .returnValues(ReturnValue.UPDATED_NEW)
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            // first use of this counter; if_not_exists keeps whichever seed wins a concurrent race
+            long start = seed.getAsLong();
+            log.info("Initialising sequence {} at {}", sequence, start);
+            response = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(CommonUtils.SEQUENCE)
+                    .key(key)
+                    .updateExpression("SET counter_value = if_not_exists(counter_value, :start) + :size")
+                    .expressionAttributeValues(Map.of(
+                            ":start", AttributeValue.fromN(Long.toString(start)),
+                            ":size", size))
+                    .returnValues(ReturnValue.UPDATED_NEW)
+                    .build());
+        }
+
+        return Long.parseLong(response.attributes().get("counter_value").n());
+    }
+
+    private static final class Block {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long next = 1;
+        private long end = 0;
+    }
+}
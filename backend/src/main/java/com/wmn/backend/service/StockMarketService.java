@@ -3,19 +3,26 @@ package com.wmn.backend.service;
 import com.wmn.backend.dto.PortfolioStockDto;
 import com.wmn.backend.dto.UserPortfolioResponse;
 import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.exception.IdempotencyConflictException;
 import com.wmn.backend.model.InvestInStocks;
 import com.wmn.backend.model.InvestInStocksResponse;
 import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.repository.ItemMappers;
 import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.ConcurrentCalls;
+import com.wmn.backend.utils.Money;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
-import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
-import java.math.BigDecimal;
-import java.time.*;
-import java.time.format.DateTimeFormatter;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.IdempotentParameterMismatchException;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 import java.util.*;
 
 @Service
@@ -25,14 +32,52 @@ public class StockMarketService {
     private final DynamoDbClient dynamoDbClient;
     private final UserService userService;
     private final TransactionService transactService;
+    private final HoldingsService holdingsService;
+    private final LedgerWriteBehind ledgerWriteBehind;
+    private final AccountSequencer accountSequencer;
 
-    public StockMarketService(DynamoDbClient dynamoDbClient, UserService userService, TransactionService transactService) {
+    public StockMarketService(DynamoDbClient dynamoDbClient, UserService userService, TransactionService transactService,
+                              HoldingsService holdingsService, LedgerWriteBehind ledgerWriteBehind,
+                              AccountSequencer accountSequencer) {
         this.dynamoDbClient = dynamoDbClient;
         this.userService = userService;
         this.transactService = transactService;
+        this.holdingsService = holdingsService;
+        this.ledgerWriteBehind = ledgerWriteBehind;
+        this.accountSequencer = accountSequencer;
     }
 
-    public InvestInStocksResponse investInStocks(InvestInStocks invest) {
+    /**
+     * {@code requestToken} is passed to DynamoDB as the ClientRequestToken of the order, so a
+     * retry carrying the same token is not applied twice; null when the caller sent no
+     * Idempotency-Key.
+     */
+    public InvestInStocksResponse investInStocks(InvestInStocks invest, String requestToken) {
+        validateOrder(invest);
+        PricedOrder order = priceOrder(invest);
+        UserResponseDto user = userService.getUserByUserId(invest.getUserId()).orElseThrow(() ->
+                new IllegalArgumentException("User not found: " + invest.getUserId()));
+        PlacedOrder placed = placeOrder(invest, order, user, requestToken);
+
+        // the sequencer only keeps same-account orders from contending here; the balance
+        // condition in the write is what guards the account across instances
+        accountSequencer.run(user.getUserId(), () -> {
+            try {
+                return dynamoDbClient.transactWriteItems(placed.request());
+            } catch (TransactionCanceledException e) {
+                throw orderFailure(e, invest, order);
+            } catch (IdempotentParameterMismatchException e) {
+                throw alreadyPlaced();
+            } finally {
+                userService.evictUser(user.getUserId());
+            }
+        });
+        placed.deferred().forEach(this::writeDeferred);
+
+        return toResponse(invest, order, userService.refreshUser(user.getUserId()).getCurrentBalance(), placed.txn());
+    }
+
+    void validateOrder(InvestInStocks invest) {
         if (invest == null || invest.getUserId() == null) {
             throw new IllegalArgumentException("Invalid input: invest or userId is null");
         }
@@ -42,46 +87,85 @@ public class StockMarketService {
         if (invest.getTransactionType() == null || invest.getTransactionType().isBlank()) {
             throw new IllegalArgumentException("Transaction type is required");
         }
+    }
 
-        Optional<UserResponseDto> sourceUserDetails = userService.getUserByUserId(invest.getUserId());
-        UserResponseDto user = sourceUserDetails.orElseThrow(() ->
-                new IllegalArgumentException("User not found: " + invest.getUserId()));
-
-        BigDecimal quantity = BigDecimal.valueOf(invest.getQuantity());
-        BigDecimal pricePerUnit = BigDecimal.valueOf(invest.getPricePerUnit());
-        BigDecimal amount = quantity.multiply(pricePerUnit);
+    PricedOrder priceOrder(InvestInStocks invest) {
+        long amount = Money.times(invest.getPricePerUnit(), invest.getQuantity());
 
         String type = invest.getTransactionType().trim().toUpperCase();
         if ("BUY".equals(type)) type = "DEBIT";
         else if ("SELL".equals(type)) type = "CREDIT";
 
-        BigDecimal currentBalance = BigDecimal.valueOf(user.getCurrentBalance());
-        BigDecimal updatedBalance = switch (type) {
-            case "DEBIT" -> {
-                if (currentBalance.compareTo(amount) < 0) {
-                    throw new IllegalArgumentException("Insufficient balance");
-                }
-                yield currentBalance.subtract(amount);
-            }
-            case "CREDIT" -> currentBalance.add(amount);
-            default ->
-                    throw new IllegalArgumentException("Unsupported transaction type: " + invest.getTransactionType());
-        };
+        if (!"DEBIT".equals(type) && !"CREDIT".equals(type)) {
+            throw new IllegalArgumentException("Unsupported transaction type: " + invest.getTransactionType());
+        }
+        return new PricedOrder(type, amount);
+    }
 
-        userService.updateUserBalance(user.getUserId(), updatedBalance.doubleValue());
+    /*
+     * The balance change, its ledger record, the trade and the holding adjustment go out in one
+     * TransactWriteItems call. The balance is adjusted server side and a debit is conditional on
+     * sufficient funds, so concurrent orders and transfers cannot overwrite each other or
+     * overdraw the account, whichever instance they run on. With write-behind the ledger and
+     * trade records are left out of the transaction and appended once it has committed.
+     */
+    PlacedOrder placeOrder(InvestInStocks invest, PricedOrder order, UserResponseDto user, String requestToken) {
+        String formattedTimestamp = getcurrentTimeStamp();
+        TransactionDto txn = transactService.newTransactionRecord(user.getUserId(), user.getUsername(), order.type(),
+                order.amount(), "Stock Market");
+        Map<String, AttributeValue> ledgerItem = ItemMappers.transactionItem(txn);
+        Map<String, AttributeValue> tradeItem = portfolioItem(invest, order.type(), formattedTimestamp);
+
+        List<TransactWriteItem> items = new ArrayList<>(4);
+        items.add(TransactWriteItem.builder().update(userService.balanceUpdate(user.getUserId(), order.amount(), order.isDebit())).build());
+        items.add(TransactWriteItem.builder().update(holdingsService.holdingUpdate(invest.getUserId(), invest.getStockName(),
+                invest.getQuantity(), invest.getPricePerUnit(), order.type(), formattedTimestamp)).build());
+
+        List<Pair<String, Map<String, AttributeValue>>> deferred = new ArrayList<>(2);
+        if (ledgerWriteBehind.isEnabled()) {
+            deferred.add(Pair.of(CommonUtils.TRANSACTION, ledgerItem));
+            deferred.add(Pair.of(CommonUtils.PORTFOLIO, tradeItem));
+        } else {
+            items.add(TransactWriteItem.builder().put(Put.builder().tableName(CommonUtils.TRANSACTION).item(ledgerItem).build()).build());
+            items.add(TransactWriteItem.builder().put(Put.builder().tableName(CommonUtils.PORTFOLIO).item(tradeItem).build()).build());
+        }
 
-        TransactionDto txn = transactService.addTransactionRecord(
-                user.getUserId(),
-                user.getUsername(),
-                type,
-                amount.doubleValue(),
-                "Stock Market"
-        );
+        TransactWriteItemsRequest request = TransactWriteItemsRequest.builder()
+                .transactItems(items)
+                .clientRequestToken(requestToken)
+                .build();
+        return new PlacedOrder(txn, request, deferred);
+    }
 
-        savePortfolioTransaction(invest, type);
+    /*
+     * The token was already used by an order with other item ids: the earlier attempt committed
+     * (an SDK timeout can hide that) and the retry built a fresh request.
+     */
+    RuntimeException alreadyPlaced() {
+        return new IdempotencyConflictException("This order was already placed for the given Idempotency-Key");
+    }
 
+    RuntimeException orderFailure(TransactionCanceledException e, InvestInStocks invest, PricedOrder order) {
+        List<CancellationReason> reasons = e.hasCancellationReasons() ? e.cancellationReasons() : List.of();
+        if (!reasons.isEmpty() && "ConditionalCheckFailed".equals(reasons.get(0).code())) {
+            return order.isDebit()
+                    ? new IllegalArgumentException("Insufficient balance")
+                    : new IllegalArgumentException("User not found: " + invest.getUserId());
+        }
+        log.warn("Order for {} on {} cancelled: {}", invest.getUserId(), invest.getStockName(), reasons);
+        return new RuntimeException("Order could not be completed, please retry");
+    }
+
+    // a record the write-behind pipeline turned away is written inline instead
+    void writeDeferred(Pair<String, Map<String, AttributeValue>> record) {
+        if (!ledgerWriteBehind.submit(record.getLeft(), record.getRight())) {
+            dynamoDbClient.putItem(PutItemRequest.builder().tableName(record.getLeft()).item(record.getRight()).build());
+        }
+    }
+
+    InvestInStocksResponse toResponse(InvestInStocks invest, PricedOrder order, long currentBalance, TransactionDto txn) {
         InvestInStocksResponse response = new InvestInStocksResponse();
-        response.setCurrentBalance(updatedBalance.doubleValue());
+        response.setCurrentBalance(currentBalance);
         response.setStockName(invest.getStockName());
         response.setQuantity(invest.getQuantity());
         response.setAmount(txn.getAmount());
@@ -100,119 +184,46 @@ public class StockMarketService {
             throw new IllegalArgumentException("userId is required");
         }
 
-        UserResponseDto user = userService.getUserByUserId(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
-
-        ScanRequest req = ScanRequest.builder()
-                .tableName("Portfolio_Transaction")
-                .build();
-
-        ScanResponse resp = dynamoDbClient.scan(req);
-
-        Map<String, PortfolioStockDto> portfolioMap = new HashMap<>();
-
-        if (resp != null && resp.items() != null) {
-
-            for (Map<String, AttributeValue> item : resp.items()) {
-
-                if (!userId.equals(item.getOrDefault("userId", AttributeValue.builder().s(null).build()).s()))
-                    continue;
-
-                String stockName = item.getOrDefault("stockName", AttributeValue.builder().s(null).build()).s();
-                if (stockName == null) continue;
-
-                String qtyStr = Optional.ofNullable(item.get("quantity"))
-                        .map(AttributeValue::n)
-                        .orElse("0");
-
-                String priceStr = Optional.ofNullable(item.get("pricePerUnit"))
-                        .map(AttributeValue::n)
-                        .orElse("0");
-
-                String txnType = Optional.ofNullable(item.get("transactionType"))
-                        .map(AttributeValue::s)
-                        .orElse("UNKNOWN");
-
-                String timestampStr = null;
-                if (item.get("timestamp") != null) {
-                    if (item.get("timestamp").s() != null) {
-                        timestampStr = item.get("timestamp").s(); // New formatted timestamp
-                    } else if (item.get("timestamp").n() != null) {
-                        long millis = Long.parseLong(item.get("timestamp").n());
-                        timestampStr = convertMillisToFormattedDate(millis); // Old numeric timestamp
-                    }
-                }
-
-                int qty = Integer.parseInt(qtyStr);
-                double price = Double.parseDouble(priceStr);
-
-                PortfolioStockDto stock = portfolioMap.getOrDefault(stockName, new PortfolioStockDto());
-                stock.setStockName(stockName);
-                stock.setPricePerUnit(price);
-
-                int currentQty = stock.getQuantity();
-
-                if ("DEBIT".equalsIgnoreCase(txnType)) {
-                    currentQty += qty;
-                } else if ("CREDIT".equalsIgnoreCase(txnType)) {
-                    currentQty -= qty;
-                }
-
-                stock.setQuantity(currentQty);
-                stock.setAmount(stock.getAmount() + (qty * price));
-
-                if (timestampStr != null) {
-                    stock.setTransactionDate(timestampStr);
-                    stock.setTransactionType(txnType);
-                }
-
-                portfolioMap.put(stockName, stock);
-            }
-        }
-
-        List<PortfolioStockDto> finalList = portfolioMap.values().stream()
-                .filter(s -> s.getQuantity() > 0)
-                .toList();
+        Pair<UserResponseDto, List<PortfolioStockDto>> result = ConcurrentCalls.both(
+                () -> userService.getUserByUserId(userId)
+                        .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId)),
+                () -> holdingsService.getHoldings(userId));
+        return toPortfolio(result.getLeft(), result.getRight());
+    }
 
+    UserPortfolioResponse toPortfolio(UserResponseDto user, List<PortfolioStockDto> stocks) {
         UserPortfolioResponse response = new UserPortfolioResponse();
         response.setUserId(user.getUserId());
         response.setUsername(user.getUsername());
         response.setUserRole(user.getUserRole());
         response.setCurrentBalance(user.getCurrentBalance());
-        response.setStocks(finalList);
+        response.setStocks(stocks);
 
         return response;
     }
 
-    private void savePortfolioTransaction(InvestInStocks invest, String txnType) {
-
-        String formattedTimestamp = getcurrentTimeStamp();
-
-        Map<String, AttributeValue> item = new HashMap<>();
-        item.put("transaction_id", AttributeValue.builder().s(UUID.randomUUID().toString()).build());
-        item.put("userId", AttributeValue.builder().s(invest.getUserId()).build());
-        item.put("stockName", AttributeValue.builder().s(invest.getStockName()).build());
-        item.put("pricePerUnit", AttributeValue.builder().n(String.valueOf(invest.getPricePerUnit())).build());
-        item.put("quantity", AttributeValue.builder().n(String.valueOf(invest.getQuantity())).build());
-        item.put("transactionType", AttributeValue.builder().s(txnType).build());
-        item.put("timestamp", AttributeValue.builder().s(formattedTimestamp).build());
-
-        dynamoDbClient.putItem(b -> b
-                .tableName("Portfolio_Transaction")
-                .item(item)
-        );
+    Map<String, AttributeValue> portfolioItem(InvestInStocks invest, String txnType, String formattedTimestamp) {
+        return ItemMappers.tradeItem(UUID.randomUUID().toString(), invest.getUserId(), invest.getStockName(),
+                invest.getPricePerUnit(), invest.getQuantity(), txnType, formattedTimestamp);
     }
 
-    private String convertMillisToFormattedDate(long millis) {
-        LocalDateTime date = LocalDateTime.ofInstant(
-                Instant.ofEpochMilli(millis),
-                ZoneId.systemDefault()
-        );
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return date.format(formatter);
+    public Map<String, Object> rebuildHoldings() {
+        return holdingsService.rebuild();
     }
 
     public static String getcurrentTimeStamp() {
         return CommonUtils.getcurrentTimeStamp();
     }
+
+    // amount in minor units
+    record PricedOrder(String type, long amount) {
+        boolean isDebit() {
+            return "DEBIT".equals(type);
+        }
+    }
+
+    // records in deferred are appended through the write-behind pipeline after the request commits
+    record PlacedOrder(TransactionDto txn, TransactWriteItemsRequest request,
+                       List<Pair<String, Map<String, AttributeValue>>> deferred) {
+    }
 }
\ No newline at end of file
@@ -1,117 +1,229 @@
 package com.wmn.backend.service;
 
+import com.wmn.backend.dto.TransactionPage;
 import com.wmn.backend.dto.TransferDto;
 import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.exception.IdempotencyConflictException;
 import com.wmn.backend.model.TransactionDto;
+import com.wmn.backend.repository.ItemMappers;
 import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.ConcurrentCalls;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
-import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class TransactionService {
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final DynamoDbClient dynamoDbClient;
     private final UserService userService;
+    private final LedgerWriteBehind ledgerWriteBehind;
+    private final AccountSequencer accountSequencer;
 
-    public TransactionService(DynamoDbClient dynamoDbClient, UserService userService) {
+    public TransactionService(DynamoDbClient dynamoDbClient, UserService userService, LedgerWriteBehind ledgerWriteBehind,
+                              AccountSequencer accountSequencer) {
         this.dynamoDbClient = dynamoDbClient;
         this.userService = userService;
+        this.ledgerWriteBehind = ledgerWriteBehind;
+        this.accountSequencer = accountSequencer;
+    }
+
+    /**
+     * Returns one page of the user's history, newest first, from the user_id/timestamp index.
+     * {@code cursor} is the nextCursor of the previous page, or null for the first page.
+     */
+    public TransactionPage listTransactions(String userId, int limit, String cursor) {
+        return toPage(dynamoDbClient.query(historyQuery(userId, limit, cursor)));
+    }
+
+    QueryRequest historyQuery(String userId, int limit, String cursor) {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("userId is required");
+        }
+
+        QueryRequest.Builder req = QueryRequest.builder()
+                .tableName(CommonUtils.TRANSACTION)
+                .indexName(CommonUtils.TRANSACTION_USER_INDEX)
+                .keyConditionExpression("user_id = :u")
+                .expressionAttributeValues(Map.of(":u", AttributeValue.fromS(userId)))
+                .scanIndexForward(false)
+                .limit(Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+
+        if (cursor != null && !cursor.isBlank()) {
+            req.exclusiveStartKey(decodeCursor(cursor, userId));
+        }
+        return req.build();
+    }
+
+    TransactionPage toPage(QueryResponse resp) {
+        List<TransactionDto> transactions = ItemMappers.toTransactions(resp.items());
+
+        String nextCursor = resp.hasLastEvaluatedKey() && !resp.lastEvaluatedKey().isEmpty()
+                ? encodeCursor(resp.lastEvaluatedKey())
+                : null;
+
+        return new TransactionPage(transactions, nextCursor);
     }
 
-    public List<TransactionDto> listTransactions(String userId) {
-        ScanRequest req = ScanRequest.builder()
+    /**
+     * Streams the user's full history, newest first, handing each DynamoDB page to
+     * {@code pageConsumer} as soon as it is read so callers never hold more than one page.
+     */
+    public void exportTransactions(String userId, Consumer<List<TransactionDto>> pageConsumer) {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("userId is required");
+        }
+
+        QueryRequest req = QueryRequest.builder()
                 .tableName(CommonUtils.TRANSACTION)
+                .indexName(CommonUtils.TRANSACTION_USER_INDEX)
+                .keyConditionExpression("user_id = :u")
+                .expressionAttributeValues(Map.of(":u", AttributeValue.fromS(userId)))
+                .scanIndexForward(false)
                 .build();
-        ScanResponse resp = dynamoDbClient.scan(req);
-        if (resp == null || resp.items() == null) return Collections.emptyList();
-        return resp.items().stream()
-                .map(this::getItem)
-                .filter(Objects::nonNull)
-                .filter(t -> userId == null || userId.isEmpty() || userId.equals(t.getUserId()))
-                .collect(Collectors.toList());
-    }
-
-    public Map<String, Object> createTransaction(TransferDto txn) {
-        Optional<UserResponseDto> sourceUserDetails = userService.getUserByUserId(txn.getSourceUserId());
-        Optional<UserResponseDto> destinationUserDetails = userService.getUserByUserId(txn.getDestinationUserId());
-        deductAmountFromSource(sourceUserDetails.get(),destinationUserDetails.get(), txn.getAmount());
-        return creditToDestinationUser(sourceUserDetails.get(),destinationUserDetails.get(), txn.getAmount());
-    }
-
-    private Map<String, AttributeValue> putItem(TransactionDto t) {
-        Map<String, AttributeValue> item = new HashMap<>();
-        if (t.getTransactionId() != null) item.put("transaction_id", AttributeValue.builder().s(t.getTransactionId()).build());
-        log.info("Transaction ID: " + t.getTransactionId());
-        double signedAmount;
-        String type = t.getTransactionType(); // expects "credit" or "debit"
-
-        item.put("amount", AttributeValue.builder().n(Double.toString(t.getAmount())).build());
-        item.put("user_id", AttributeValue.builder().s(t.getUserId()).build());
-        item.put("transaction_type", AttributeValue.builder().s(type).build());
-        item.put("from_username", AttributeValue.builder().s(t.getFromUsername()).build());
-        item.put("to_username", AttributeValue.builder().s(t.getToUsername()).build());
-        item.put("timestamp", AttributeValue.builder().s(t.getTimestamp()).build());
-
-        return item;
-    }
-
-    private TransactionDto getItem(Map<String, AttributeValue> item) {
-        if (item == null || item.isEmpty()) return null;
-        TransactionDto t = new TransactionDto();
-        if (item.containsKey("transaction_id") && item.get("transaction_id").s() != null) t.setTransactionId(item.get("transaction_id").s());
-        if (item.containsKey("transaction_type") && item.get("transaction_type").s() != null) t.setTransactionType(item.get("transaction_type").s());
-        if (item.containsKey("from_username") && item.get("from_username").s() != null) t.setFromUsername(item.get("from_username").s());
-        if (item.containsKey("user_id") && item.get("user_id").s() != null) t.setUserId(item.get("user_id").s());
-        if (item.containsKey("amount") && item.get("amount").n() != null) t.setAmount(Double.parseDouble(item.get("amount").n()));
-        if (item.containsKey("timestamp") && item.get("timestamp").s() != null) t.setTimestamp(item.get("timestamp").s());
-        if (item.containsKey("to_username") && item.get("to_username").s() != null) t.setToUsername(item.get("to_username").s());
-        return t;
-    }
-
-    private UserResponseDto deductAmountFromSource(UserResponseDto sourceUserDetails, UserResponseDto destinationUserDetails, double amount) {
-        String sourceUserId = sourceUserDetails.getUserId();
-        if(sourceUserDetails.getCurrentBalance() < amount){
-            throw new IllegalArgumentException("Insufficient Balance");
+
+        for (QueryResponse page : dynamoDbClient.queryPaginator(req)) {
+            pageConsumer.accept(ItemMappers.toTransactions(page.items()));
         }
-        UserResponseDto updateUserDto = new UserResponseDto();
-        updateUserDto.setUserId(sourceUserId);
-        updateUserDto.setCurrentBalance(sourceUserDetails.getCurrentBalance() - amount);
-        userService.updateUserBalance(sourceUserId, updateUserDto.getCurrentBalance());
-        addTransactionRecord(sourceUserId, sourceUserDetails.getUsername(), "DEBIT", amount, destinationUserDetails.getUsername());
-        return updateUserDto;
+    }
 
+    // all key attributes of the table and the index are strings
+    private String encodeCursor(Map<String, AttributeValue> key) {
+        String raw = key.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue().s())
+                .collect(Collectors.joining("\n"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
-    private Map<String, Object> creditToDestinationUser(UserResponseDto sourceUserDetails, UserResponseDto destinationUserDetails, double amount) {
-        String destinationUserId = destinationUserDetails.getUserId();
-        UserResponseDto updateUserDto = new UserResponseDto();
-        updateUserDto.setUserId(destinationUserId);
-        updateUserDto.setCurrentBalance(destinationUserDetails.getCurrentBalance() + amount);
-        userService.updateUserBalance(destinationUserId, updateUserDto.getCurrentBalance());
-        addTransactionRecord(destinationUserId, sourceUserDetails.getUsername(), "CREDIT", amount, destinationUserDetails.getUsername());
+    private Map<String, AttributeValue> decodeCursor(String cursor, String userId) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            for (String part : raw.split("\n")) {
+                int eq = part.indexOf('=');
+                key.put(part.substring(0, eq), AttributeValue.fromS(part.substring(eq + 1)));
+            }
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
 
+        AttributeValue owner = key.get("user_id");
+        if (owner == null || !userId.equals(owner.s())) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return key;
+    }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("message", "Transaction success");
-            response.put("sourceUserId", sourceUserDetails.getUserId());
-            response.put("sourceUsername", sourceUserDetails.getUsername());
-            response.put("destinationUserId", destinationUserId);
-            response.put("destinationUsername", destinationUserDetails.getUsername());
-            return response;
+    /**
+     * {@code requestToken} is passed to DynamoDB as the ClientRequestToken of the transfer, so a
+     * retry carrying the same token is not applied twice; null when the caller sent no
+     * Idempotency-Key.
+     */
+    public Map<String, Object> createTransaction(TransferDto txn, String requestToken) {
+        validateTransfer(txn);
+
+        Pair<UserResponseDto, UserResponseDto> parties = ConcurrentCalls.both(
+                () -> userService.getUserByUserId(txn.getSourceUserId())
+                        .orElseThrow(() -> new IllegalArgumentException("User not found: " + txn.getSourceUserId())),
+                () -> userService.getUserByUserId(txn.getDestinationUserId())
+                        .orElseThrow(() -> new IllegalArgumentException("User not found: " + txn.getDestinationUserId())));
+        UserResponseDto sourceUserDetails = parties.getLeft();
+        UserResponseDto destinationUserDetails = parties.getRight();
+
+        accountSequencer.run(List.of(sourceUserDetails.getUserId(), destinationUserDetails.getUserId()), () -> {
+            try {
+                return dynamoDbClient.transactWriteItems(transferRequest(sourceUserDetails, destinationUserDetails, txn.getAmount(), requestToken));
+            } catch (TransactionCanceledException e) {
+                throw transferFailure(e, sourceUserDetails, destinationUserDetails);
+            } catch (IdempotentParameterMismatchException e) {
+                throw alreadyApplied();
+            } finally {
+                userService.evictUser(sourceUserDetails.getUserId());
+                userService.evictUser(destinationUserDetails.getUserId());
+            }
+        });
+
+        return transferResponse(sourceUserDetails, destinationUserDetails);
+    }
 
+    void validateTransfer(TransferDto txn) {
+        if (txn.getAmount() == null || txn.getAmount() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (txn.getSourceUserId() == null || txn.getSourceUserId().equals(txn.getDestinationUserId())) {
+            throw new IllegalArgumentException("Source and destination users must be different");
+        }
+    }
+
+    /*
+     * Debit, credit and both ledger records go out in one TransactWriteItems call. Balances are
+     * adjusted server side and the debit is conditional on sufficient funds, so concurrent
+     * transfers on the same account cannot lose updates or overdraw it.
+     */
+    TransactWriteItemsRequest transferRequest(UserResponseDto source, UserResponseDto destination, long amount, String requestToken) {
+        TransactionDto debit = newTransactionRecord(source.getUserId(), source.getUsername(), "DEBIT", amount, destination.getUsername());
+        TransactionDto credit = newTransactionRecord(destination.getUserId(), source.getUsername(), "CREDIT", amount, destination.getUsername());
+
+        return TransactWriteItemsRequest.builder()
+                .transactItems(
+                        TransactWriteItem.builder().update(userService.balanceUpdate(source.getUserId(), amount, true)).build(),
+                        TransactWriteItem.builder().update(userService.balanceUpdate(destination.getUserId(), amount, false)).build(),
+                        TransactWriteItem.builder().put(Put.builder().tableName(CommonUtils.TRANSACTION).item(ItemMappers.transactionItem(debit)).build()).build(),
+                        TransactWriteItem.builder().put(Put.builder().tableName(CommonUtils.TRANSACTION).item(ItemMappers.transactionItem(credit)).build()).build())
+                .clientRequestToken(requestToken)
+                .build();
+    }
+
+    // the token's transfer went through earlier, with ledger records this retry did not reproduce
+    RuntimeException alreadyApplied() {
+        return new IdempotencyConflictException("This transfer was already applied for the given Idempotency-Key");
+    }
+
+    RuntimeException transferFailure(TransactionCanceledException e, UserResponseDto source, UserResponseDto destination) {
+        List<CancellationReason> reasons = e.hasCancellationReasons() ? e.cancellationReasons() : List.of();
+        if (isConditionFailure(reasons, 0)) {
+            return new IllegalArgumentException("Insufficient Balance");
+        }
+        if (isConditionFailure(reasons, 1)) {
+            return new IllegalArgumentException("User not found: " + destination.getUserId());
+        }
+        log.warn("Transfer from {} to {} cancelled: {}", source.getUserId(), destination.getUserId(), reasons);
+        return new RuntimeException("Transfer could not be completed, please retry");
+    }
 
+    Map<String, Object> transferResponse(UserResponseDto source, UserResponseDto destination) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Transaction success");
+        response.put("sourceUserId", source.getUserId());
+        response.put("sourceUsername", source.getUsername());
+        response.put("destinationUserId", destination.getUserId());
+        response.put("destinationUsername", destination.getUsername());
+        return response;
     }
 
-    public TransactionDto addTransactionRecord(String sourceUserId, String username, String transactionType, double amount, String destinationUserName) {
+    public Map<String, Object> getWriteBehindStats() {
+        return ledgerWriteBehind.stats();
+    }
+
+    public Map<String, Object> getSequencerStats() {
+        return accountSequencer.stats();
+    }
+
+    private boolean isConditionFailure(List<CancellationReason> reasons, int index) {
+        return reasons.size() > index && "ConditionalCheckFailed".equals(reasons.get(index).code());
+    }
+
+    TransactionDto newTransactionRecord(String sourceUserId, String username, String transactionType, long amount, String destinationUserName) {
         TransactionDto txn = new TransactionDto();
         txn.setTransactionId(RandomStringUtils.randomAlphanumeric(8));
         txn.setUserId(sourceUserId);
@@ -120,13 +232,6 @@ public class TransactionService {
         txn.setAmount(amount);
         txn.setToUsername(destinationUserName);
         txn.setTimestamp(CommonUtils.getcurrentTimeStamp());
-
-        PutItemRequest request = PutItemRequest.builder()
-                .tableName(CommonUtils.TRANSACTION)
-                .item(putItem(txn))
-                .build();
-        dynamoDbClient.putItem(request);
-
         return txn;
     }
 }
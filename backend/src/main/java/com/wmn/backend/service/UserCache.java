@@ -0,0 +1,145 @@
+package com.wmn.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of raw user items keyed by user_id.
+ * Least recently used entries are evicted once max-size is reached and every entry
+ * expires after the configured TTL so writes made by other instances become visible.
+ * Every entry remembers when its user was last written (an invalidation leaves an empty
+ * entry behind for this), so a load is only dropped when its own user was written meanwhile.
+ */
+@Component
+public class UserCache implements MeterBinder {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // ticks on every write; entries are stamped with the tick of their user's last write
+    private final AtomicLong clock = new AtomicLong();
+    // latest write stamp among entries pushed out by max-size, which stands in for their lost stamps
+    private long evictedStamp;
+
+    public UserCache(@Value("${user.cache.max-size:10000}") int maxSize,
+                     @Value("${user.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > UserCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    evictedStamp = Math.max(evictedStamp, eldest.getValue().writtenAt());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (String stat : List.of("hits", "misses", "evictions", "size")) {
+            Gauge.builder("user.cache", this, cache -> cache.stats().get(stat)).tag("stat", stat).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the cached item for the user, loading it through {@code loader} on a miss.
+     * A loader returning null (user does not exist) is not cached.
+     */
+    public Map<String, AttributeValue> get(String userId, Function<String, Map<String, AttributeValue>> loader) {
+        Map<String, AttributeValue> cached = lookup(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadGeneration = generation();
+        Map<String, AttributeValue> item = loader.apply(userId);
+        putLoaded(userId, item, loadGeneration);
+        return item;
+    }
+
+    /** Returns the cached item, or null on a miss; counts towards the hit/miss statistics. */
+    public Map<String, AttributeValue> lookup(String userId) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            // expired and invalidated entries stay until replaced, they still carry the write stamp
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.item() != null && entry.expiresAt() > now) {
+                hits.incrementAndGet();
+                return entry.item();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Snapshot to take before loading an item that is later passed to {@link #putLoaded}. */
+    public long generation() {
+        return clock.get();
+    }
+
+    /** Caches a freshly loaded item unless its user was written since {@code loadGeneration}. */
+    public void putLoaded(String userId, Map<String, AttributeValue> item, long loadGeneration) {
+        if (item == null) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            long writtenAt = entry != null ? entry.writtenAt() : evictedStamp;
+            if (writtenAt <= loadGeneration) {
+                entries.put(userId, new Entry(item, System.currentTimeMillis() + ttlMillis, writtenAt));
+            }
+        }
+    }
+
+    public void put(String userId, Map<String, AttributeValue> item) {
+        if (item == null || item.isEmpty()) {
+            invalidate(userId);
+            return;
+        }
+        synchronized (entries) {
+            entries.put(userId, new Entry(item, System.currentTimeMillis() + ttlMillis, clock.incrementAndGet()));
+        }
+    }
+
+    public void invalidate(String userId) {
+        synchronized (entries) {
+            entries.put(userId, new Entry(null, 0, clock.incrementAndGet()));
+        }
+    }
+
+    public Map<String, Long> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("size", (long) size);
+        stats.put("maxSize", (long) maxSize);
+        return stats;
+    }
+
+    // item is null for an invalidated user
+    private record Entry(Map<String, AttributeValue> item, long expiresAt, long writtenAt) {
+    }
+}
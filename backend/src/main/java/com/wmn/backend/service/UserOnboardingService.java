@@ -0,0 +1,340 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.dto.BulkUserResult;
+import com.wmn.backend.dto.UserDto;
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.Money;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Creates users in bulk from a streamed CSV or NDJSON upload.
+ * Rows are read one at a time, validated against the UserDto constraints and written in
+ * BatchWriteItem chunks of 25, with at most max-in-flight chunks being written at once; the
+ * upload is not read further while all of them are busy, so memory stays bounded by the chunks
+ * in flight whatever the size of the upload. User ids come from the sequence counter in blocks
+ * of id-block-size, so a chunk costs one BatchWriteItem plus the per-row username allocation,
+ * independent of how many users the table already holds.
+ * Ids from the counter are never handed out twice, which is what makes the unconditional batch
+ * puts safe; createUser still guards its single put with a condition.
+ */
+@Slf4j
+@Service
+public class UserOnboardingService {
+
+    private static final int BATCH_SIZE = 25;
+    private static final int MAX_ATTEMPTS = 8;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final UserService userService;
+    private final UsernameIndex usernameIndex;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int maxInFlight;
+    private final int idBlockSize;
+
+    public UserOnboardingService(DynamoDbClient dynamoDbClient, UserService userService, UsernameIndex usernameIndex,
+                                 ObjectMapper objectMapper, Validator validator,
+                                 @Value("${user.bulk.max-in-flight:8}") int maxInFlight,
+                                 @Value("${user.bulk.id-block-size:500}") int idBlockSize) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.userService = userService;
+        this.usernameIndex = usernameIndex;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.maxInFlight = maxInFlight;
+        this.idBlockSize = idBlockSize;
+    }
+
+    /**
+     * Starts reading an upload. A CSV upload needs a header line naming the username,
+     * currentBalance (or current_balance) and userRole (or user_role) columns; it is read and
+     * checked here, before any response is committed, and a missing or unusable header is an
+     * IllegalArgumentException.
+     */
+    public Upload open(InputStream body, boolean csv) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        if (!csv) {
+            return new Upload(reader, null);
+        }
+        String header;
+        while ((header = reader.readLine()) != null && header.isBlank()) {
+            // skip leading blank lines
+        }
+        if (header == null) {
+            throw new IllegalArgumentException("CSV upload must start with a header line");
+        }
+        return new Upload(reader, csvColumns(header));
+    }
+
+    /**
+     * Onboards every row of {@code upload} and hands one result per row to {@code results} as soon
+     * as it is known; results of different chunks may arrive out of row order. Returns once every
+     * row has a result.
+     */
+    public Map<String, Long> onboard(Upload upload, Consumer<BulkUserResult> results) {
+        long started = System.currentTimeMillis();
+        ReentrantLock resultLock = new ReentrantLock();
+        Map<String, AtomicLong> counts = new TreeMap<>();
+        for (String status : List.of("CREATED", "INVALID", "FAILED")) {
+            counts.put(status, new AtomicLong());
+        }
+        // not synchronized: writers are virtual threads and results go straight to the response
+        Consumer<BulkUserResult> out = result -> {
+            counts.get(result.getStatus()).incrementAndGet();
+            resultLock.lock();
+            try {
+                results.accept(result);
+            } finally {
+                resultLock.unlock();
+            }
+        };
+
+        Semaphore permits = new Semaphore(maxInFlight);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Row> chunk = new ArrayList<>(BATCH_SIZE);
+            Consumer<List<Row>> dispatch = rows -> {
+                acquire(permits);
+                rethrow(failure);
+                writers.submit(() -> {
+                    try {
+                        writeChunk(rows, out);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            };
+
+            readRows(upload, row -> {
+                if (row.error() != null) {
+                    out.accept(BulkUserResult.invalid(row.number(), row.error()));
+                    return;
+                }
+                chunk.add(row);
+                if (chunk.size() == BATCH_SIZE) {
+                    dispatch.accept(List.copyOf(chunk));
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                dispatch.accept(List.copyOf(chunk));
+            }
+        }
+        rethrow(failure);
+
+        Map<String, Long> summary = new LinkedHashMap<>();
+        counts.forEach((status, count) -> summary.put(status.toLowerCase(), count.get()));
+        summary.put("elapsedMillis", System.currentTimeMillis() - started);
+        log.info("Bulk onboarding finished: {}", summary);
+        return summary;
+    }
+
+    private void writeChunk(List<Row> rows, Consumer<BulkUserResult> out) {
+        Map<String, Row> byUserId = new LinkedHashMap<>();
+        Map<String, String> usernames = new HashMap<>();
+        List<WriteRequest> writes = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            try {
+                String username = userService.generateFinalUsername(row.user().getUsername());
+                String userId = userService.generateUserId(idBlockSize);
+                Map<String, AttributeValue> item = userService.newUserItem(username, row.user(), userService.roleOrDefault(row.user().getUserRole()));
+                item.put("user_id", AttributeValue.fromS(userId));
+                writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+                byUserId.put(userId, row);
+                usernames.put(userId, username);
+            } catch (RuntimeException e) {
+                out.accept(BulkUserResult.failed(row.number(), "Could not allocate user: " + e.getMessage()));
+            }
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        Set<String> unprocessed;
+        try {
+            unprocessed = writeBatch(writes);
+        } catch (RuntimeException e) {
+            log.warn("Bulk onboarding batch of {} users failed: {}", writes.size(), e.getMessage());
+            byUserId.values().forEach(row -> out.accept(BulkUserResult.failed(row.number(), "Write failed: " + e.getMessage())));
+            return;
+        }
+
+        byUserId.forEach((userId, row) -> {
+            if (unprocessed.contains(userId)) {
+                out.accept(BulkUserResult.failed(row.number(), "Write throttled, retry the row"));
+            } else {
+                usernameIndex.register(usernames.get(userId), userId);
+                out.accept(BulkUserResult.created(row.number(), userId, usernames.get(userId)));
+            }
+        });
+    }
+
+    // retries unprocessed items with backoff; returns the user ids still unwritten after MAX_ATTEMPTS
+    private Set<String> writeBatch(List<WriteRequest> writes) {
+        Map<String, List<WriteRequest>> pending = Map.of(CommonUtils.USER, writes);
+        for (int attempt = 1; ; attempt++) {
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder().requestItems(pending).build());
+            pending = response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of();
+            if (pending.isEmpty()) {
+                return Set.of();
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                return pending.getOrDefault(CommonUtils.USER, List.of()).stream()
+                        .map(w -> w.putRequest().item().get("user_id").s())
+                        .collect(Collectors.toSet());
+            }
+            try {
+                Thread.sleep(Math.min(1000L, 50L << Math.min(attempt, 5)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while onboarding users");
+            }
+        }
+    }
+
+    private void readRows(Upload upload, Consumer<Row> rows) {
+        Map<String, Integer> columns = upload.columns();
+        try {
+            long number = 0;
+            String line;
+            while ((line = upload.reader().readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                number++;
+                rows.accept(columns != null ? csvRow(number, line, columns) : jsonRow(number, line));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Row jsonRow(long number, String line) {
+        try {
+            return validated(number, objectMapper.readValue(line, UserDto.class));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return new Row(number, null, "Malformed row");
+        }
+    }
+
+    private Row csvRow(long number, String line, Map<String, Integer> columns) {
+        List<String> fields = csvFields(line);
+        UserDto user = new UserDto();
+        user.setUsername(field(fields, columns.get("username")));
+        user.setUserRole(field(fields, columns.get("userrole")));
+        String balance = field(fields, columns.get("currentbalance"));
+        try {
+            user.setCurrentBalance(balance == null || balance.isBlank() ? null : Money.parse(balance.trim()));
+        } catch (IllegalArgumentException e) {
+            return new Row(number, null, "currentBalance: " + e.getMessage());
+        }
+        return validated(number, user);
+    }
+
+    private Row validated(long number, UserDto user) {
+        Set<ConstraintViolation<UserDto>> violations = validator.validate(user);
+        if (violations.isEmpty()) {
+            return new Row(number, user, null);
+        }
+        String errors = violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+        return new Row(number, null, errors);
+    }
+
+    // header names are matched case-insensitively, with or without underscores
+    private Map<String, Integer> csvColumns(String header) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = csvFields(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().replace("_", "").toLowerCase(), i);
+        }
+        if (!columns.containsKey("username")) {
+            throw new IllegalArgumentException("CSV header must contain a username column");
+        }
+        return columns;
+    }
+
+    private String field(List<String> fields, Integer index) {
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    // RFC 4180 fields on a single line: quoted fields may contain commas and doubled quotes
+    private List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void acquire(Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while onboarding users");
+        }
+    }
+
+    private void rethrow(AtomicReference<RuntimeException> failure) {
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private record Row(long number, UserDto user, String error) {
+    }
+
+    /** An upload whose header, if any, has been read; columns is null for NDJSON. */
+    public record Upload(BufferedReader reader, Map<String, Integer> columns) {
+    }
+}
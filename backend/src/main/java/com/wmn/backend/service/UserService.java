@@ -4,37 +4,115 @@ import com.wmn.backend.dto.UpdateUserDto;
 import com.wmn.backend.dto.UserDto;
 import com.wmn.backend.dto.UserResponseDto;
 import com.wmn.backend.model.InvestInStocksResponse;
+import com.wmn.backend.repository.ItemMappers;
+import com.wmn.backend.utils.CommonUtils;
+import com.wmn.backend.utils.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class UserService {
 
     private final DynamoDbClient dynamoDbClient;
-    private final String tableName = "user";
-
-    public UserService(DynamoDbClient dynamoDbClient) {
+    private final UserCache userCache;
+    private final UsernameIndex usernameIndex;
+    private final SequenceAllocator sequenceAllocator;
+    private final AccountSequencer accountSequencer;
+    private final int userIdBlockSize;
+    private final String tableName = CommonUtils.USER;
+
+    private static final String USER_ID_SEQUENCE = "user_id";
+    private static final String USERNAME_SEQUENCE_PREFIX = "username#";
+    // marks that the per-name counters were seeded from usernames created before they existed
+    private static final String USERNAME_COUNTERS_SEEDED = "username_counters_seeded";
+    private static final long FIRST_USERNAME_SUFFIX = 1001;
+    private static final Pattern SUFFIXED_USERNAME = Pattern.compile("(.+)-(\\d{1,18})");
+
+    private final ReentrantLock usernameSeedLock = new ReentrantLock();
+    private volatile boolean usernameCountersSeeded;
+
+    public UserService(DynamoDbClient dynamoDbClient, UserCache userCache, UsernameIndex usernameIndex,
+                       SequenceAllocator sequenceAllocator, AccountSequencer accountSequencer,
+                       @Value("${user.id-block-size:20}") int userIdBlockSize) {
         this.dynamoDbClient = dynamoDbClient;
-
+        this.userCache = userCache;
+        this.usernameIndex = usernameIndex;
+        this.sequenceAllocator = sequenceAllocator;
+        this.accountSequencer = accountSequencer;
+        this.userIdBlockSize = userIdBlockSize;
     }
 
     private String generateUserId() {
-        ScanResponse scan = dynamoDbClient.scan(ScanRequest.builder().tableName(tableName).build());
-
-        int max = scan.items().stream().map(i -> i.get("user_id")).filter(Objects::nonNull).map(AttributeValue::s).filter(id -> id.startsWith("U")).map(id -> Integer.parseInt(id.substring(1))).max(Integer::compareTo).orElse(0);
+        return generateUserId(userIdBlockSize);
+    }
 
-        return String.format("U%03d", max + 1);
+    /** Next user id, reserving {@code blockSize} ids from the counter whenever the current block runs out. */
+    String generateUserId(int blockSize) {
+        return String.format("U%03d", sequenceAllocator.next(USER_ID_SEQUENCE, blockSize, this::maxExistingUserId));
     }
 
-    private String generateFinalUsername(String base) {
-        ScanResponse scan = dynamoDbClient.scan(ScanRequest.builder().tableName(tableName).build());
+    // one-time seed for the user id counter on tables created before it existed
+    private long maxExistingUserId() {
+        ScanRequest request = ScanRequest.builder().tableName(tableName).projectionExpression("user_id").build();
 
-        int maxSuffix = scan.items().stream().map(i -> i.get("username")).filter(Objects::nonNull).map(AttributeValue::s).filter(u -> u.startsWith(base + "-")).map(u -> u.substring(u.lastIndexOf("-") + 1)).filter(num -> num.matches("\\d+")).map(Integer::parseInt).max(Integer::compareTo).orElse(1000); // start at 1001
+        return dynamoDbClient.scanPaginator(request).items().stream().map(i -> i.get("user_id")).filter(Objects::nonNull).map(AttributeValue::s).filter(id -> id.matches("U\\d+")).mapToLong(id -> Long.parseLong(id.substring(1))).max().orElse(0);
+    }
 
-        return base + "-" + (maxSuffix + 1);
+    String generateFinalUsername(String base) {
+        seedUsernameCounters();
+        // the counter starts past every existing suffix, so only a rename to base-<n> can be in the way
+        while (true) {
+            String candidate = base + "-" + sequenceAllocator.next(USERNAME_SEQUENCE_PREFIX + base, 1, () -> FIRST_USERNAME_SUFFIX - 1);
+            if (usernameIndex.lookup(candidate, id -> userCache.get(id, this::loadUserItem)) == null) {
+                return candidate;
+            }
+        }
+    }
+
+    /*
+     * One-time migration for usernames created before the per-name counters existed: one Scan
+     * raises every name's counter to its highest suffix in use, then a marker counter records that
+     * it is done. Instances racing through it are harmless, raising a counter never lowers it.
+     */
+    private void seedUsernameCounters() {
+        if (usernameCountersSeeded) {
+            return;
+        }
+        usernameSeedLock.lock();
+        try {
+            if (usernameCountersSeeded || sequenceAllocator.exists(USERNAME_COUNTERS_SEEDED)) {
+                usernameCountersSeeded = true;
+                return;
+            }
+            Map<String, Long> highest = new HashMap<>();
+            ScanRequest request = ScanRequest.builder().tableName(tableName).projectionExpression("username").build();
+            for (Map<String, AttributeValue> item : dynamoDbClient.scanPaginator(request).items()) {
+                AttributeValue username = item.get("username");
+                Matcher matcher = username == null || username.s() == null ? null : SUFFIXED_USERNAME.matcher(username.s());
+                if (matcher != null && matcher.matches()) {
+                    highest.merge(matcher.group(1), Long.parseLong(matcher.group(2)), Math::max);
+                }
+            }
+            highest.forEach((base, suffix) -> {
+                if (suffix >= FIRST_USERNAME_SUFFIX) {
+                    sequenceAllocator.raise(USERNAME_SEQUENCE_PREFIX + base, suffix);
+                }
+            });
+            sequenceAllocator.raise(USERNAME_COUNTERS_SEEDED, 1);
+            usernameCountersSeeded = true;
+            log.info("Seeded {} username counters from existing usernames", highest.size());
+        } finally {
+            usernameSeedLock.unlock();
+        }
     }
 
     private String normalizeRole(String role) {
@@ -50,57 +128,60 @@ public class UserService {
     }
 
     public UserResponseDto createUser(UserDto dto) {
-        String newUserId = generateUserId();
         String finalUsername = generateFinalUsername(dto.getUsername());
-
-        String role = normalizeRole(dto.getUserRole());
-        if (role == null) {
-            role = "USER";
+        String role = roleOrDefault(dto.getUserRole());
+        Map<String, AttributeValue> item = newUserItem(finalUsername, dto, role);
+
+        String newUserId;
+        while (true) {
+            newUserId = generateUserId();
+            item.put("user_id", AttributeValue.fromS(newUserId));
+            try {
+                dynamoDbClient.putItem(
+                        PutItemRequest.builder()
+                                .tableName(tableName)
+                                .item(item)
+                                .conditionExpression("attribute_not_exists(user_id)")
+                                .build()
+                );
+                break;
+            } catch (ConditionalCheckFailedException e) {
+                log.warn("User id {} already taken, allocating the next one", newUserId);
+            }
         }
+        usernameIndex.register(finalUsername, newUserId);
+
+        return new UserResponseDto(newUserId, finalUsername, 0, role);
+    }
 
-        Map<String, AttributeValue> item = new HashMap<>();
-        item.put("user_id", AttributeValue.fromS(newUserId));
+    String roleOrDefault(String role) {
+        String normalized = normalizeRole(role);
+        return normalized == null ? "USER" : normalized;
+    }
+
+    /** A new ACTIVE user item without its user_id. */
+    Map<String, AttributeValue> newUserItem(String finalUsername, UserDto dto, String role) {
+        Map<String, AttributeValue> item = HashMap.newHashMap(5);
         item.put("username", AttributeValue.fromS(finalUsername));
-        item.put("current_balance", AttributeValue.fromN(String.valueOf(dto.getCurrentBalance())));
+        item.put("current_balance", AttributeValue.fromN(Money.format(dto.getCurrentBalance() == null ? 0 : dto.getCurrentBalance())));
         item.put("user_role", AttributeValue.fromS(role));
         item.put("status", AttributeValue.fromS("ACTIVE"));
-
-        dynamoDbClient.putItem(
-                PutItemRequest.builder()
-                        .tableName(tableName)
-                        .item(item)
-                        .build()
-        );
-
-        return new UserResponseDto(newUserId, finalUsername, 0.0, role);
+        return item;
     }
 
     public Optional<UserResponseDto> getUser(String username) {
 
-        ScanRequest request = ScanRequest.builder()
-                .tableName(tableName)
-                .filterExpression("username = :u")
-                .expressionAttributeValues(Map.of(
-                        ":u", AttributeValue.builder().s(username).build()
-                ))
-                .build();
-
-        ScanResponse response = dynamoDbClient.scan(request);
+        Map<String, AttributeValue> item = usernameIndex.lookup(username, id -> userCache.get(id, this::loadUserItem));
 
-        if (response.count() == 0) {
+        if (item == null) {
             return Optional.empty();
         }
 
-        Map<String, AttributeValue> item = response.items().get(0);
-
-        AttributeValue statusAttr = item.get("status");
-        if (statusAttr != null && statusAttr.s() != null) {
-            if ("inactive".equalsIgnoreCase(statusAttr.s())) {
-                throw new RuntimeException("User not found");
-            }
+        if (isInactive(item)) {
+            throw new RuntimeException("User not found");
         }
 
-        return Optional.of(mapItemToResponse(item));
+        return Optional.of(ItemMappers.toUser(item));
     }
 
     public UserResponseDto updateUser(String userId, UpdateUserDto dto) {
@@ -109,7 +190,17 @@ public class UserService {
         Map<String, AttributeValue> values = new HashMap<>();
         List<String> updates = new ArrayList<>();
 
+        String previousUsername = null;
         if (dto.getUsername() != null) {
+            // best effort: two concurrent renames to the same free name can still both pass
+            Map<String, AttributeValue> holder = usernameIndex.lookup(dto.getUsername(), id -> userCache.get(id, this::loadUserItem));
+            if (holder != null && !userId.equals(holder.get("user_id").s())) {
+                throw new IllegalArgumentException("Username already taken: " + dto.getUsername());
+            }
+            Map<String, AttributeValue> current = userCache.get(userId, this::loadUserItem);
+            AttributeValue currentName = current == null ? null : current.get("username");
+            previousUsername = currentName == null ? null : currentName.s();
+
             names.put("#username", "username");
             updates.add("#username = :username");
             values.put(":username", AttributeValue.fromS(dto.getUsername()));
@@ -118,7 +209,7 @@ public class UserService {
         if (dto.getCurrentBalance() != null) {
             names.put("#current_balance", "current_balance");
             updates.add("#current_balance = :current_balance");
-            values.put(":current_balance", AttributeValue.fromN(dto.getCurrentBalance().toString()));
+            values.put(":current_balance", AttributeValue.fromN(Money.format(dto.getCurrentBalance())));
         }
 
         if (dto.getUserRole() != null) {
@@ -132,14 +223,27 @@ public class UserService {
             throw new IllegalArgumentException("No fields to update");
         }
 
-        UpdateItemResponse updated = dynamoDbClient.updateItem(UpdateItemRequest.builder().tableName(tableName).key(Map.of("user_id", AttributeValue.fromS(userId))).updateExpression("SET " + String.join(", ", updates)).expressionAttributeNames(names).expressionAttributeValues(values).returnValues(ReturnValue.ALL_NEW).build());
+        UpdateItemRequest request = UpdateItemRequest.builder().tableName(tableName).key(Map.of("user_id", AttributeValue.fromS(userId))).updateExpression("SET " + String.join(", ", updates)).expressionAttributeNames(names).expressionAttributeValues(values).returnValues(ReturnValue.ALL_NEW).build();
+        // setting the balance outright is an admin override; it still waits for in-flight transfers
+        // and orders on the account here so it is not interleaved with them
+        UpdateItemResponse updated = dto.getCurrentBalance() != null
+                ? accountSequencer.run(userId, () -> dynamoDbClient.updateItem(request))
+                : dynamoDbClient.updateItem(request);
+        userCache.put(userId, updated.attributes());
+        if (dto.getUsername() != null) {
+            if (!dto.getUsername().equals(previousUsername)) {
+                usernameIndex.unregister(previousUsername, userId);
+            }
+            usernameIndex.register(dto.getUsername(), userId);
+        }
 
-        return mapItemToResponse(updated.attributes());
+        return ItemMappers.toUser(updated.attributes());
     }
 
     public Map<String, Object> deleteUser(String userId) {
 
         dynamoDbClient.updateItem(UpdateItemRequest.builder().tableName(tableName).key(Map.of("user_id", AttributeValue.fromS(userId))).updateExpression("SET #s = :inactive").expressionAttributeNames(Map.of("#s", "status")).expressionAttributeValues(Map.of(":inactive", AttributeValue.fromS("INACTIVE"))).build());
+        userCache.invalidate(userId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "User deleted successfully");
@@ -154,68 +258,90 @@ public class UserService {
                 ScanRequest.builder().tableName(tableName).build()
         );
 
-        return scan.items().stream()
-                .filter(item -> {
-                    String itemStatus = item.containsKey("status") ? item.get("status").s() : null;
+        List<UserResponseDto> users = new ArrayList<>(scan.items().size());
+        for (Map<String, AttributeValue> item : scan.items()) {
+            AttributeValue itemStatus = item.get(ItemMappers.STATUS);
+            if (itemStatus == null || !"inactive".equalsIgnoreCase(itemStatus.s())) {
+                users.add(ItemMappers.toUser(item));
+            }
+        }
+        return users;
+    }
 
-                    return !("inactive".equalsIgnoreCase(itemStatus));
-                })
-                .map(this::mapItemToResponse)
-                .collect(Collectors.toList());
+    /**
+     * Re-reads the user with a consistent read after its balance was changed by a conditional
+     * update, and caches the result unless the entry changed again meanwhile.
+     */
+    public UserResponseDto refreshUser(String userId) {
+        long loadGeneration = userCache.generation();
+        Map<String, AttributeValue> item = itemOf(dynamoDbClient.getItem(consistentUserItemRequest(userId)));
+        if (item == null) {
+            throw new IllegalArgumentException("User not found: " + userId);
+        }
+        userCache.putLoaded(userId, item, loadGeneration);
+        return ItemMappers.toUser(item);
     }
 
-    private UserResponseDto mapItemToResponse(Map<String, AttributeValue> item) {
-        String userId = Optional.ofNullable(item.get("user_id")).map(AttributeValue::s).orElse(null);
+    public Optional<UserResponseDto> getUserByUserId(String userId) {
 
-        String username = Optional.ofNullable(item.get("username")).map(AttributeValue::s).orElse(null);
+        Map<String, AttributeValue> item = userCache.get(userId, this::loadUserItem);
 
-        Double currentBalance = Optional.ofNullable(item.get("current_balance")).map(AttributeValue::n).map(Double::valueOf).orElse(0.0);
+        if (item == null) {
+            return Optional.empty();
+        }
 
-        String userRole = Optional.ofNullable(item.get("user_role")).map(AttributeValue::s).orElse(null);
+        if (isInactive(item)) {
+            throw new RuntimeException("User not found");
+        }
 
-        return new UserResponseDto(userId, username, currentBalance, userRole);
+        return Optional.of(ItemMappers.toUser(item));
     }
 
-    public void updateUserBalance(String userId, double newBalance) {
-        Map<String, AttributeValue> key = Collections.singletonMap("userId", AttributeValue.builder().s(userId).build());
-        Map<String, AttributeValue> exprVals = Collections.singletonMap(":current_balance", AttributeValue.builder().n(Double.toString(newBalance)).build());
-
-        UpdateItemRequest req = UpdateItemRequest.builder()
+    /**
+     * Builds an atomic balance adjustment for use in a TransactWriteItems call.
+     * A debit is conditional on the account holding at least {@code amount}.
+     */
+    public Update balanceUpdate(String userId, long amount, boolean debit) {
+        return Update.builder()
                 .tableName(tableName)
-                .key(Map.of("user_id", AttributeValue.builder().s(userId).build()))
-                .updateExpression("SET current_balance = :current_balance")
-                .expressionAttributeValues(exprVals)
+                .key(Map.of("user_id", AttributeValue.fromS(userId)))
+                .updateExpression(debit ? "SET current_balance = current_balance - :amt" : "SET current_balance = current_balance + :amt")
+                .conditionExpression(debit ? "attribute_exists(user_id) AND current_balance >= :amt" : "attribute_exists(user_id)")
+                .expressionAttributeValues(Map.of(":amt", AttributeValue.fromN(Money.format(amount))))
                 .build();
+    }
 
-        dynamoDbClient.updateItem(req);
+    /** Drops the cached item after its balance was changed outside this service. */
+    public void evictUser(String userId) {
+        userCache.invalidate(userId);
     }
 
-    public Optional<UserResponseDto> getUserByUserId(String userId) {
+    public Map<String, Long> getCacheStats() {
+        return userCache.stats();
+    }
 
-        ScanRequest request = ScanRequest.builder()
+    private Map<String, AttributeValue> loadUserItem(String userId) {
+        return itemOf(dynamoDbClient.getItem(userItemRequest(userId)));
+    }
+
+    GetItemRequest userItemRequest(String userId) {
+        return GetItemRequest.builder()
                 .tableName(tableName)
-                .filterExpression("user_id = :u")
-                .expressionAttributeValues(Map.of(
-                        ":u", AttributeValue.builder().s(userId).build()
-                ))
+                .key(Map.of("user_id", AttributeValue.fromS(userId)))
                 .build();
+    }
 
-        ScanResponse response = dynamoDbClient.scan(request);
-
-        if (response.count() == 0) {
-            return Optional.empty();
-        }
+    GetItemRequest consistentUserItemRequest(String userId) {
+        return userItemRequest(userId).toBuilder().consistentRead(true).build();
+    }
 
-        Map<String, AttributeValue> item = response.items().get(0);
+    Map<String, AttributeValue> itemOf(GetItemResponse response) {
+        return response.hasItem() && !response.item().isEmpty() ? response.item() : null;
+    }
 
+    boolean isInactive(Map<String, AttributeValue> item) {
         AttributeValue statusAttr = item.get("status");
-        if (statusAttr != null && statusAttr.s() != null) {
-            if ("inactive".equalsIgnoreCase(statusAttr.s())) {
-                throw new RuntimeException("User not found");
-            }
-        }
-
-        return Optional.of(mapItemToResponse(item));
+        return statusAttr != null && "inactive".equalsIgnoreCase(statusAttr.s());
     }
 
     /*
@@ -0,0 +1,140 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.utils.CommonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Resolves users by username.
+ * In "gsi" mode this is a single Query against the username-index GSI of the user table.
+ * In "local" mode (or when the GSI is missing, e.g. against a local DynamoDB) an in-process
+ * username -> user_id map is built once from a paginated scan and kept current by UserService.
+ */
+@Slf4j
+@Component
+public class UsernameIndex {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final Map<String, String> localIndex = new ConcurrentHashMap<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean useGsi;
+    private volatile boolean localLoaded;
+
+    public UsernameIndex(DynamoDbClient dynamoDbClient,
+                         @Value("${user.username-index.mode:gsi}") String mode) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.useGsi = !"local".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Returns the user item for the username, or null if there is none.
+     * {@code itemLoader} fetches an item by user_id and is only used by the local index.
+     */
+    public Map<String, AttributeValue> lookup(String username, Function<String, Map<String, AttributeValue>> itemLoader) {
+        if (useGsi) {
+            try {
+                return queryIndex(username);
+            } catch (DynamoDbException e) {
+                if (!isMissingIndex(e)) {
+                    throw e;
+                }
+                log.warn("{} not found on table {}, falling back to in-process username index", CommonUtils.USERNAME_INDEX, CommonUtils.USER);
+                useGsi = false;
+            }
+        }
+
+        loadLocalIndex();
+        String userId = localIndex.get(username);
+        if (userId == null) {
+            return null;
+        }
+
+        Map<String, AttributeValue> item = itemLoader.apply(userId);
+        AttributeValue current = item == null ? null : item.get("username");
+        if (current == null || !username.equals(current.s())) {
+            // the user was renamed through another path, drop the stale mapping
+            localIndex.remove(username, userId);
+            return null;
+        }
+        return item;
+    }
+
+    public void register(String username, String userId) {
+        if (username != null && userId != null) {
+            localIndex.put(username, userId);
+        }
+    }
+
+    /** Drops the mapping of a username that {@code userId} no longer has. */
+    public void unregister(String username, String userId) {
+        if (username != null && userId != null) {
+            localIndex.remove(username, userId);
+        }
+    }
+
+    boolean usesGsi() {
+        return useGsi;
+    }
+
+    QueryRequest indexQuery(String username) {
+        return QueryRequest.builder()
+                .tableName(CommonUtils.USER)
+                .indexName(CommonUtils.USERNAME_INDEX)
+                .keyConditionExpression("username = :u")
+                .expressionAttributeValues(Map.of(":u", AttributeValue.fromS(username)))
+                .limit(1)
+                .build();
+    }
+
+    Map<String, AttributeValue> firstItem(QueryResponse response) {
+        return response.count() == 0 ? null : response.items().get(0);
+    }
+
+    private Map<String, AttributeValue> queryIndex(String username) {
+        return firstItem(dynamoDbClient.query(indexQuery(username)));
+    }
+
+    private void loadLocalIndex() {
+        if (localLoaded) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            if (localLoaded) {
+                return;
+            }
+            ScanRequest request = ScanRequest.builder()
+                    .tableName(CommonUtils.USER)
+                    .projectionExpression("user_id, username")
+                    .build();
+
+            dynamoDbClient.scanPaginator(request).items().forEach(item -> {
+                AttributeValue userId = item.get("user_id");
+                AttributeValue username = item.get("username");
+                if (userId != null && username != null) {
+                    localIndex.putIfAbsent(username.s(), userId.s());
+                }
+            });
+            localLoaded = true;
+            log.info("In-process username index loaded with {} entries", localIndex.size());
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private boolean isMissingIndex(DynamoDbException e) {
+        if (e instanceof ResourceNotFoundException) {
+            return false;
+        }
+        String message = e.awsErrorDetails() != null ? e.awsErrorDetails().errorMessage() : e.getMessage();
+        return message != null && message.contains("specified index");
+    }
+}
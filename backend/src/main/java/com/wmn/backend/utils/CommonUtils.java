@@ -12,8 +12,14 @@ import java.util.stream.Collectors;
 
 public class CommonUtils {
 
+    public static final String USER = "user";
+    public static final String USERNAME_INDEX = "username-index";
+    public static final String SEQUENCE = "sequence_counter";
     public static final String TRANSACTION = "transaction";
+    public static final String TRANSACTION_USER_INDEX = "user_id-timestamp-index";
     public static final String PORTFOLIO = "Portfolio_Transaction";
+    public static final String HOLDINGS = "Portfolio_Holding";
+    public static final String IDEMPOTENCY = "idempotency_key";
     public static final String BUCKET_NAME = "wmnanalytics";
     public static final String FOLDER_PREFIX = "analytics-output/";
     public static final Region REGION = Region.AP_SOUTH_2;
@@ -0,0 +1,80 @@
+package com.wmn.backend.utils;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent blocking calls (DynamoDB, S3, ...) at the same time, each on its own
+ * virtual thread. Calls are scoped: every method returns only once all of its subtasks are
+ * done, and as soon as one fails the others are cancelled and that failure is rethrown.
+ */
+public final class ConcurrentCalls {
+
+    private static final Executor VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private ConcurrentCalls() {
+    }
+
+    /** Runs a blocking call on its own virtual thread and exposes it as a future. */
+    public static <T> CompletableFuture<T> async(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, VIRTUAL_THREADS);
+    }
+
+    /** The failure behind a CompletableFuture stage, without the CompletionException wrapper. */
+    public static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B> Pair<A, B> both(Callable<A> first, Callable<B> second) {
+        List<Object> results = invokeAll(List.of(first, second));
+        return Pair.of((A) results.get(0), (B) results.get(1));
+    }
+
+    public static void all(Runnable... tasks) {
+        List<Callable<Object>> callables = new ArrayList<>(tasks.length);
+        for (Runnable task : tasks) {
+            callables.add(Executors.callable(task));
+        }
+        invokeAll(callables);
+    }
+
+    private static List<Object> invokeAll(List<? extends Callable<?>> tasks) {
+        try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Object> completion = new ExecutorCompletionService<>(scope);
+            List<Future<Object>> futures = new ArrayList<>(tasks.size());
+            for (Callable<?> task : tasks) {
+                futures.add(completion.submit(task::call));
+            }
+
+            try {
+                // take in completion order so the first failure cancels the rest immediately
+                for (int i = 0; i < tasks.size(); i++) {
+                    completion.take().get();
+                }
+                List<Object> results = new ArrayList<>(futures.size());
+                for (Future<Object> future : futures) {
+                    results.add(future.get());
+                }
+                return results;
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new CompletionException(e.getCause());
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for concurrent calls");
+            }
+        }
+    }
+}
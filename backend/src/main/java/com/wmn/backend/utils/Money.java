@@ -0,0 +1,135 @@
+package com.wmn.backend.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a primitive long of minor units (1/100 of the currency unit), so balance, transfer
+ * and trade arithmetic never boxes, allocates or drifts. Amounts are still stored in DynamoDB
+ * and sent over JSON as decimal numbers of major units ("1234.50"), so items written before
+ * this type, and the Glue jobs and frontend that read them, keep working.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    private static final long MINOR_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Reads a decimal amount as stored in DynamoDB or sent by a client. Plain decimals with at
+     * most two fraction digits are parsed without allocating; anything else (items written from
+     * doubles such as "1.0E7" or "99.99000000000001") is rounded half-even to two digits.
+     */
+    public static long parse(String decimal) {
+        if (decimal == null || decimal.isEmpty()) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        int length = decimal.length();
+        int i = 0;
+        boolean negative = decimal.charAt(0) == '-';
+        if (negative || decimal.charAt(0) == '+') {
+            i++;
+        }
+        long major = 0;
+        int digits = 0;
+        for (; i < length && isDigit(decimal.charAt(i)); i++, digits++) {
+            if (digits == 16) {
+                return parseLegacy(decimal);
+            }
+            major = major * 10 + (decimal.charAt(i) - '0');
+        }
+        long minor = 0;
+        int fraction = 0;
+        if (i < length && decimal.charAt(i) == '.') {
+            for (i++; i < length && isDigit(decimal.charAt(i)); i++, fraction++) {
+                if (fraction == SCALE) {
+                    return parseLegacy(decimal);
+                }
+                minor = minor * 10 + (decimal.charAt(i) - '0');
+            }
+        }
+        if (i != length || digits + fraction == 0) {
+            return parseLegacy(decimal);
+        }
+        if (fraction == 1) {
+            minor *= 10;
+        }
+        long amount = major * MINOR_PER_MAJOR + minor;
+        return negative ? -amount : amount;
+    }
+
+    /** Reads a DynamoDB number attribute, 0 when it is absent. */
+    public static long parseOrZero(String decimal) {
+        return decimal == null ? 0 : parse(decimal);
+    }
+
+    /** Decimal text in major units with two fraction digits, as written to DynamoDB and JSON. */
+    public static String format(long minor) {
+        long abs = Math.abs(minor);
+        long fraction = abs % MINOR_PER_MAJOR;
+        StringBuilder text = new StringBuilder(24);
+        if (minor < 0) {
+            text.append('-');
+        }
+        text.append(abs / MINOR_PER_MAJOR).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    public static long times(long unitPrice, int quantity) {
+        return Math.multiplyExact(unitPrice, (long) quantity);
+    }
+
+    public static long plus(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long minus(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /** For values that only exist as doubles (spreadsheet cells, charts); never for arithmetic. */
+    public static double toDouble(long minor) {
+        return minor / (double) MINOR_PER_MAJOR;
+    }
+
+    private static long parseLegacy(String decimal) {
+        try {
+            return new BigDecimal(decimal).setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount: " + decimal);
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Writes a minor-unit long as a JSON decimal number of major units. */
+    public static final class JsonWriter extends JsonSerializer<Long> {
+        @Override
+        public void serialize(Long minor, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(format(minor));
+        }
+    }
+
+    /** Reads a JSON number (or numeric string) of major units into minor units without going through double. */
+    public static final class JsonReader extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return parse(parser.getText().trim());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.BatchTransferResponse;
+import com.wmn.backend.dto.BatchTransferResult;
+import com.wmn.backend.dto.TransferDto;
+import com.wmn.backend.dto.UserResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BatchTransferServiceTest {
+
+	private DynamoDbClient dynamoDbClient;
+	private BatchTransferService service;
+
+	@BeforeEach
+	void setUp() {
+		dynamoDbClient = mock(DynamoDbClient.class);
+		UserService userService = mock(UserService.class);
+		when(userService.getUserByUserId(anyString())).thenAnswer(call -> {
+			String userId = call.getArgument(0);
+			return userId.startsWith("U") ? Optional.of(new UserResponseDto(userId, "user-" + userId, 100_000, "USER")) : Optional.empty();
+		});
+		AccountSequencer accountSequencer = new AccountSequencer(16, 1000, new SimpleMeterRegistry());
+		TransactionService transactionService = new TransactionService(dynamoDbClient, userService, mock(LedgerWriteBehind.class), accountSequencer);
+		service = new BatchTransferService(dynamoDbClient, userService, transactionService, accountSequencer, 100, 4);
+	}
+
+	@Test
+	void netsChunkIntoOneWriteConditionedOnLowestRunningBalance() {
+		when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+				.thenReturn(TransactWriteItemsResponse.builder().build());
+
+		BatchTransferResponse response = service.transfer(List.of(
+				transfer("U002", "U001", 30),
+				transfer("U001", "U002", 100),
+				transfer("U001", "U003", 50)));
+
+		assertThat(response.getApplied()).isEqualTo(3);
+		assertThat(response.getGroups()).isEqualTo(1);
+		assertThat(response.getWrites()).isEqualTo(1);
+
+		ArgumentCaptor<TransactWriteItemsRequest> request = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+		verify(dynamoDbClient).transactWriteItems(request.capture());
+		Map<String, Update> updates = balanceUpdates(request.getValue());
+		assertThat(updates).hasSize(3);
+		assertThat(request.getValue().transactItems()).hasSize(3 + 2 * 3);
+
+		// U001 is credited 30 before its debits of 100 and 50, so it must hold 120, not 150
+		assertThat(updates.get("U001").expressionAttributeValues().get(":net").n()).isEqualTo("-1.20");
+		assertThat(updates.get("U001").expressionAttributeValues().get(":required").n()).isEqualTo("1.20");
+		// U002 pays 30 before it receives 100
+		assertThat(updates.get("U002").expressionAttributeValues().get(":net").n()).isEqualTo("0.70");
+		assertThat(updates.get("U002").expressionAttributeValues().get(":required").n()).isEqualTo("0.30");
+		// U003 is only credited and is not conditioned on its balance
+		assertThat(updates.get("U003").expressionAttributeValues().get(":net").n()).isEqualTo("0.50");
+		assertThat(updates.get("U003").conditionExpression()).isEqualTo("attribute_exists(user_id)");
+	}
+
+	@Test
+	void appliesCancelledChunkOneByOne() {
+		TransactionCanceledException chunkCancelled = cancelled("ConditionalCheckFailed", "None", "None");
+		TransactionCanceledException insufficient = cancelled("ConditionalCheckFailed", "None", "None", "None");
+		when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+				.thenThrow(chunkCancelled)
+				.thenReturn(TransactWriteItemsResponse.builder().build())
+				.thenThrow(insufficient);
+
+		BatchTransferResponse response = service.transfer(List.of(
+				transfer("U001", "U002", 100),
+				transfer("U001", "U003", 50)));
+
+		assertThat(response.getResults()).extracting(BatchTransferResult::getStatus).containsExactly("APPLIED", "REJECTED");
+		assertThat(response.getResults().get(1).getError()).isEqualTo("Insufficient Balance");
+		assertThat(response.getWrites()).isEqualTo(3);
+		verify(dynamoDbClient, times(3)).transactWriteItems(any(TransactWriteItemsRequest.class));
+	}
+
+	@Test
+	void writesUnrelatedAccountsAsSeparateGroups() {
+		when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+				.thenReturn(TransactWriteItemsResponse.builder().build());
+
+		BatchTransferResponse response = service.transfer(List.of(
+				transfer("U001", "U002", 100),
+				transfer("U003", "U004", 100),
+				transfer("U002", "U005", 10)));
+
+		assertThat(response.getApplied()).isEqualTo(3);
+		assertThat(response.getGroups()).isEqualTo(2);
+		assertThat(response.getWrites()).isEqualTo(2);
+	}
+
+	@Test
+	void rejectsInvalidTransfersAndUnknownUsersWithoutWriting() {
+		BatchTransferResponse response = service.transfer(List.of(
+				transfer("U001", "U001", 100),
+				transfer("U001", "U002", 0),
+				transfer("U001", "X999", 100)));
+
+		assertThat(response.getRejected()).isEqualTo(3);
+		assertThat(response.getResults().get(2).getError()).isEqualTo("User not found: X999");
+		verify(dynamoDbClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+	}
+
+	private Map<String, Update> balanceUpdates(TransactWriteItemsRequest request) {
+		Map<String, Update> updates = new HashMap<>();
+		for (TransactWriteItem item : request.transactItems()) {
+			if (item.update() != null) {
+				updates.put(item.update().key().get("user_id").s(), item.update());
+			}
+		}
+		return updates;
+	}
+
+	private TransactionCanceledException cancelled(String... codes) {
+		return TransactionCanceledException.builder()
+				.message("cancelled")
+				.cancellationReasons(Arrays.stream(codes).map(code -> CancellationReason.builder().code(code).build()).toList())
+				.build();
+	}
+
+	private TransferDto transfer(String source, String destination, long amount) {
+		TransferDto txn = new TransferDto();
+		txn.setSourceUserId(source);
+		txn.setDestinationUserId(destination);
+		txn.setAmount(amount);
+		return txn;
+	}
+}
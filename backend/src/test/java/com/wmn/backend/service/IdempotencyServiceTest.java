@@ -0,0 +1,184 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wmn.backend.exception.IdempotencyConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+	private static final TypeReference<Map<String, Object>> RESPONSE = new TypeReference<>() {};
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private DynamoDbClient dynamoDbClient;
+	private IdempotencyService service;
+	private AtomicInteger runs;
+
+	@BeforeEach
+	void setUp() {
+		dynamoDbClient = mock(DynamoDbClient.class);
+		when(dynamoDbClient.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+		service = service(3000);
+		runs = new AtomicInteger();
+	}
+
+	@Test
+	void runsEveryTimeWithoutKey() {
+		execute(null, request(100));
+		execute(" ", request(100));
+
+		assertThat(runs).hasValue(2);
+		verifyNoInteractions(dynamoDbClient);
+	}
+
+	@Test
+	void claimsKeyAndRecordsResponse() {
+		IdempotencyService.Outcome<Map<String, Object>> outcome = execute("k1", request(100));
+
+		assertThat(outcome.replayed()).isFalse();
+		assertThat(outcome.body()).containsEntry("message", "ok");
+		verify(dynamoDbClient).putItem(any(PutItemRequest.class));
+		verify(dynamoDbClient).updateItem(any(UpdateItemRequest.class));
+	}
+
+	@Test
+	void replaysRepeatFromLocalCache() {
+		execute("k1", request(100));
+		IdempotencyService.Outcome<Map<String, Object>> repeat = execute("k1", request(100));
+
+		assertThat(repeat.replayed()).isTrue();
+		assertThat(repeat.body()).containsEntry("message", "ok");
+		assertThat(runs).hasValue(1);
+		verify(dynamoDbClient, times(1)).putItem(any(PutItemRequest.class));
+	}
+
+	@Test
+	void rejectsKeyReusedForDifferentRequest() {
+		execute("k1", request(100));
+
+		assertThatThrownBy(() -> execute("k1", request(200)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(runs).hasValue(1);
+	}
+
+	@Test
+	void sameKeyInAnotherScopeRunsAgain() {
+		execute("k1", request(100));
+		service.execute("k1", "invest", request(100), RESPONSE, action()).join();
+
+		assertThat(runs).hasValue(2);
+	}
+
+	@Test
+	void replaysResponseCompletedOnAnotherInstance() throws Exception {
+		claimedElsewhere("COMPLETED", fingerprint(request(100)), "{\"message\":\"stored\"}");
+
+		IdempotencyService.Outcome<Map<String, Object>> outcome = execute("k1", request(100));
+
+		assertThat(outcome.replayed()).isTrue();
+		assertThat(outcome.body()).containsEntry("message", "stored");
+		assertThat(runs).hasValue(0);
+	}
+
+	@Test
+	void rejectsDifferentRequestCompletedOnAnotherInstance() throws Exception {
+		claimedElsewhere("COMPLETED", fingerprint(request(100)), "{\"message\":\"stored\"}");
+
+		assertThatThrownBy(() -> execute("k1", request(200)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(runs).hasValue(0);
+	}
+
+	@Test
+	void conflictsWhileStillInProgressElsewhere() throws Exception {
+		service = service(0);
+		claimedElsewhere("IN_PROGRESS", fingerprint(request(100)), null);
+
+		assertThatThrownBy(() -> execute("k1", request(100)))
+				.isInstanceOf(IdempotencyConflictException.class);
+		assertThat(runs).hasValue(0);
+	}
+
+	@Test
+	void failedRequestReleasesKeyForRetry() {
+		CompletableFuture<IdempotencyService.Outcome<Map<String, Object>>> failed = service.execute("k1", "transfer",
+				request(100), RESPONSE, () -> CompletableFuture.failedFuture(new IllegalArgumentException("Insufficient Balance")));
+
+		assertThatThrownBy(failed::join)
+				.isInstanceOf(CompletionException.class)
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+		verify(dynamoDbClient).deleteItem(any(DeleteItemRequest.class));
+
+		IdempotencyService.Outcome<Map<String, Object>> retry = execute("k1", request(100));
+		assertThat(retry.replayed()).isFalse();
+		assertThat(runs).hasValue(1);
+	}
+
+	@Test
+	void requestTokenFitsDynamoDbClientRequestToken() {
+		String token = IdempotencyService.requestToken("transfer", "k1");
+
+		assertThat(token).hasSize(32).isEqualTo(IdempotencyService.requestToken("transfer", " k1 "));
+		assertThat(IdempotencyService.requestToken("invest", "k1")).isNotEqualTo(token);
+		assertThat(IdempotencyService.requestToken("transfer", null)).isNull();
+	}
+
+	private IdempotencyService service(long inProgressWaitMillis) {
+		return new IdempotencyService(dynamoDbClient, objectMapper, new SimpleMeterRegistry(), 24, 60, inProgressWaitMillis, 100);
+	}
+
+	private IdempotencyService.Outcome<Map<String, Object>> execute(String key, Map<String, Object> request) {
+		return service.execute(key, "transfer", request, RESPONSE, action()).join();
+	}
+
+	private Supplier<CompletableFuture<Map<String, Object>>> action() {
+		return () -> {
+			runs.incrementAndGet();
+			return CompletableFuture.completedFuture(Map.of("message", "ok"));
+		};
+	}
+
+	private void claimedElsewhere(String state, String fingerprint, String response) {
+		when(dynamoDbClient.putItem(any(PutItemRequest.class)))
+				.thenThrow(ConditionalCheckFailedException.builder().message("claimed").build());
+		Map<String, AttributeValue> item = new LinkedHashMap<>();
+		item.put("idempotency_key", AttributeValue.fromS("transfer#k1"));
+		item.put("state", AttributeValue.fromS(state));
+		item.put("request_hash", AttributeValue.fromS(fingerprint));
+		item.put("expires_at", AttributeValue.fromN(Long.toString(System.currentTimeMillis() / 1000 + 3600)));
+		if (response != null) {
+			item.put("response", AttributeValue.fromS(response));
+		}
+		when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().item(item).build());
+	}
+
+	private Map<String, Object> request(long amount) {
+		Map<String, Object> request = new LinkedHashMap<>();
+		request.put("sourceUserId", "U001");
+		request.put("destinationUserId", "U002");
+		request.put("amount", amount);
+		return request;
+	}
+
+	private String fingerprint(Object request) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request)));
+	}
+}
@@ -0,0 +1,103 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LedgerWriteBehindTest {
+
+	@TempDir
+	Path dir;
+
+	private DynamoDbClient dynamoDbClient;
+	private LedgerWriteBehind writeBehind;
+
+	@BeforeEach
+	void setUp() {
+		dynamoDbClient = mock(DynamoDbClient.class);
+		when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(BatchWriteItemResponse.builder().build());
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (writeBehind != null) {
+			writeBehind.shutdown();
+		}
+	}
+
+	@Test
+	void deletesFlushedSegmentsWithoutWaitingForAnIdleQueue() throws Exception {
+		writeBehind = start(2_000, 1);
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(writeBehind.submit("Transaction", Map.of("transaction_id", AttributeValue.fromS("T" + i)))).isTrue();
+		}
+		awaitFlushed(100);
+
+		// every record got its own segment; all but the one still being appended to are gone, and that
+		// one still holds its record, so it was not the idle truncation that cleaned up
+		long deadline = System.currentTimeMillis() + 1_000;
+		while (spillFiles().size() > 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(spillFiles()).containsExactly("ledger-spill.log.100");
+		assertThat(Files.size(dir.resolve("ledger-spill.log.100"))).isPositive();
+	}
+
+	@Test
+	void replaysLeftoverSegmentsOldestFirstAndDeletesThem() throws Exception {
+		Files.writeString(dir.resolve("ledger-spill.log"), record("T1") + record("T2"));
+		Files.writeString(dir.resolve("ledger-spill.log.3"), record("T3") + "{\"table\":\"Transac");
+
+		writeBehind = start(50, 8 * 1024 * 1024);
+		awaitFlushed(3);
+
+		ArgumentCaptor<BatchWriteItemRequest> requests = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+		verify(dynamoDbClient, times(2)).batchWriteItem(requests.capture());
+		assertThat(requests.getAllValues())
+				.flatExtracting(request -> request.requestItems().get("Transaction"))
+				.extracting(write -> write.putRequest().item().get("transaction_id").s())
+				.containsExactly("T1", "T2", "T3");
+		assertThat(spillFiles()).containsExactly("ledger-spill.log.4");
+	}
+
+	private LedgerWriteBehind start(long flushIntervalMs, long segmentBytes) {
+		return new LedgerWriteBehind(dynamoDbClient, new ObjectMapper(), true, 1000, flushIntervalMs,
+				dir.resolve("ledger-spill.log").toString(), segmentBytes);
+	}
+
+	private void awaitFlushed(long items) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (((Number) writeBehind.stats().get("itemsFlushed")).longValue() < items && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(writeBehind.stats()).containsEntry("itemsFlushed", items);
+	}
+
+	private List<String> spillFiles() throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(file -> file.getFileName().toString()).sorted().toList();
+		}
+	}
+
+	private String record(String transactionId) {
+		return "{\"table\":\"Transaction\",\"item\":{\"transaction_id\":{\"S\":\"" + transactionId + "\"}}}\n";
+	}
+}
@@ -0,0 +1,80 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReportManifestTest {
+
+	private static final S3Object LISTED = S3Object.builder()
+			.key("analytics-output/Analytics_Report_20261017_120000.xlsx")
+			.eTag("\"listed\"")
+			.size(2048L)
+			.lastModified(Instant.parse("2026-10-17T12:00:00Z"))
+			.build();
+
+	private S3Client s3Client;
+	private ReportManifest manifest;
+
+	@BeforeEach
+	void setUp() {
+		s3Client = mock(S3Client.class);
+		when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+				.thenAnswer(call -> new ListObjectsV2Iterable(s3Client, call.getArgument(0)));
+		when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+				.thenReturn(ListObjectsV2Response.builder().contents(LISTED).build());
+		manifest = new ReportManifest(s3Client, new ObjectMapper(), 30, 60);
+	}
+
+	@Test
+	void servesFreshManifestWithoutListing() {
+		stored("{\"key\":\"analytics-output/glue.xlsx\",\"eTag\":\"\\\"glue\\\"\",\"size\":10,"
+				+ "\"lastModified\":\"2026-10-17T11:00:00Z\",\"updatedAt\":\"" + Instant.now() + "\"}");
+
+		Optional<S3Object> latest = manifest.latest();
+
+		assertThat(latest).map(S3Object::key).contains("analytics-output/glue.xlsx");
+		verify(s3Client, never()).listObjectsV2(any(ListObjectsV2Request.class));
+	}
+
+	@Test
+	void rebuildsManifestWithoutUpdatedAt() {
+		stored("{\"key\":\"analytics-output/old.xlsx\",\"eTag\":\"\\\"old\\\"\",\"size\":10,\"lastModified\":\"2026-10-17T11:00:00Z\"}");
+
+		assertThat(manifest.latest()).contains(LISTED);
+		verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+	}
+
+	@Test
+	void rebuildsManifestWithUnparseableTimes() {
+		stored("{\"key\":\"analytics-output/old.xlsx\",\"size\":10,\"lastModified\":\"yesterday\",\"updatedAt\":\"" + Instant.now() + "\"}");
+
+		assertThat(manifest.latest()).contains(LISTED);
+	}
+
+	@Test
+	void rebuildsStaleManifest() {
+		stored("{\"key\":\"analytics-output/old.xlsx\",\"eTag\":\"\\\"old\\\"\",\"size\":10,"
+				+ "\"lastModified\":\"2026-10-17T11:00:00Z\",\"updatedAt\":\"" + Instant.now().minusSeconds(61 * 60) + "\"}");
+
+		assertThat(manifest.latest()).contains(LISTED);
+	}
+
+	private void stored(String json) {
+		when(s3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+				.thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), json.getBytes(StandardCharsets.UTF_8)));
+	}
+}
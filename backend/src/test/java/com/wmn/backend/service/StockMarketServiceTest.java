@@ -0,0 +1,72 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.UserResponseDto;
+import com.wmn.backend.exception.IdempotencyConflictException;
+import com.wmn.backend.model.InvestInStocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockMarketServiceTest {
+
+	private static final UserResponseDto USER = new UserResponseDto("U001", "alice", 100_000, "USER");
+
+	private DynamoDbClient dynamoDbClient;
+	private StockMarketService service;
+
+	@BeforeEach
+	void setUp() {
+		dynamoDbClient = mock(DynamoDbClient.class);
+		UserService userService = mock(UserService.class);
+		when(userService.getUserByUserId("U001")).thenReturn(Optional.of(USER));
+		when(userService.refreshUser("U001")).thenReturn(USER);
+		when(userService.balanceUpdate(anyString(), anyLong(), anyBoolean())).thenReturn(Update.builder().tableName("User").build());
+		LedgerWriteBehind ledgerWriteBehind = mock(LedgerWriteBehind.class);
+		AccountSequencer accountSequencer = new AccountSequencer(16, 1000, new SimpleMeterRegistry());
+		service = new StockMarketService(dynamoDbClient, userService,
+				new TransactionService(dynamoDbClient, userService, ledgerWriteBehind, accountSequencer),
+				new HoldingsService(dynamoDbClient), ledgerWriteBehind, accountSequencer);
+	}
+
+	@Test
+	void sendsIdempotencyTokenWithTheOrder() {
+		when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class))).thenReturn(TransactWriteItemsResponse.builder().build());
+		String token = IdempotencyService.requestToken("invest", "k1");
+
+		service.investInStocks(order(), token);
+
+		ArgumentCaptor<TransactWriteItemsRequest> request = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+		verify(dynamoDbClient).transactWriteItems(request.capture());
+		assertThat(request.getValue().clientRequestToken()).isEqualTo(token);
+		assertThat(request.getValue().transactItems()).hasSize(4);
+	}
+
+	@Test
+	void rejectsRetryOfAnOrderThatAlreadyCommitted() {
+		when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+				.thenThrow(IdempotentParameterMismatchException.builder().message("mismatch").build());
+
+		assertThatThrownBy(() -> service.investInStocks(order(), IdempotencyService.requestToken("invest", "k1")))
+				.isInstanceOf(IdempotencyConflictException.class);
+	}
+
+	private InvestInStocks order() {
+		InvestInStocks invest = new InvestInStocks();
+		invest.setUserId("U001");
+		invest.setStockName("TCS");
+		invest.setQuantity(2);
+		invest.setPricePerUnit(350_000L);
+		invest.setTransactionType("BUY");
+		return invest;
+	}
+}
@@ -0,0 +1,93 @@
+package com.wmn.backend.service;
+
+import com.wmn.backend.dto.TransactionPage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransactionServiceTest {
+
+	private static final Map<String, AttributeValue> LAST_KEY = Map.of(
+			"transaction_id", AttributeValue.fromS("aB3dE5gH"),
+			"user_id", AttributeValue.fromS("U001"),
+			"timestamp", AttributeValue.fromS("2025-01-31 23:59:59"));
+
+	private DynamoDbClient dynamoDbClient;
+	private TransactionService service;
+
+	@BeforeEach
+	void setUp() {
+		dynamoDbClient = mock(DynamoDbClient.class);
+		service = new TransactionService(dynamoDbClient, mock(UserService.class), mock(LedgerWriteBehind.class),
+				new AccountSequencer(16, 1000, new SimpleMeterRegistry()));
+	}
+
+	@Test
+	void nextCursorResumesAfterLastEvaluatedKey() {
+		when(dynamoDbClient.query(any(QueryRequest.class)))
+				.thenReturn(QueryResponse.builder().items(List.of()).lastEvaluatedKey(LAST_KEY).build())
+				.thenReturn(QueryResponse.builder().items(List.of()).build());
+
+		TransactionPage first = service.listTransactions("U001", 50, null);
+		assertThat(first.getNextCursor()).isNotBlank().doesNotContain("=", "+", "/");
+
+		TransactionPage last = service.listTransactions("U001", 50, first.getNextCursor());
+		assertThat(last.getNextCursor()).isNull();
+
+		ArgumentCaptor<QueryRequest> requests = ArgumentCaptor.forClass(QueryRequest.class);
+		verify(dynamoDbClient, times(2)).query(requests.capture());
+		assertThat(requests.getAllValues().get(0).exclusiveStartKey()).isEmpty();
+		assertThat(requests.getAllValues().get(1).exclusiveStartKey()).isEqualTo(LAST_KEY);
+	}
+
+	@Test
+	void queriesNewestFirstWithClampedPageSize() {
+		when(dynamoDbClient.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().items(List.of()).build());
+
+		service.listTransactions("U001", 10_000, null);
+		service.listTransactions("U001", 0, null);
+
+		ArgumentCaptor<QueryRequest> requests = ArgumentCaptor.forClass(QueryRequest.class);
+		verify(dynamoDbClient, times(2)).query(requests.capture());
+		assertThat(requests.getAllValues()).extracting(QueryRequest::limit).containsExactly(500, 1);
+		assertThat(requests.getAllValues()).allMatch(request -> !request.scanIndexForward());
+	}
+
+	@Test
+	void rejectsCursorOfAnotherUser() {
+		when(dynamoDbClient.query(any(QueryRequest.class)))
+				.thenReturn(QueryResponse.builder().items(List.of()).lastEvaluatedKey(LAST_KEY).build());
+		String cursor = service.listTransactions("U001", 50, null).getNextCursor();
+
+		assertThatThrownBy(() -> service.listTransactions("U002", 50, cursor))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Invalid cursor");
+	}
+
+	@Test
+	void rejectsMalformedCursors() {
+		String noSeparator = Base64.getUrlEncoder().encodeToString("user_id".getBytes(StandardCharsets.UTF_8));
+		for (String cursor : List.of("not base64!", noSeparator)) {
+			assertThatThrownBy(() -> service.listTransactions("U001", 50, cursor))
+					.as("cursor %s", cursor)
+					.isInstanceOf(IllegalArgumentException.class)
+					.hasMessage("Invalid cursor");
+		}
+		verify(dynamoDbClient, never()).query(any(QueryRequest.class));
+	}
+}
@@ -0,0 +1,52 @@
+package com.wmn.backend.service;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCacheTest {
+
+	private final UserCache cache = new UserCache(2, 30);
+
+	@Test
+	void cachesLoadThatRacedWithWritesToOtherUsers() {
+		long loadGeneration = cache.generation();
+		cache.invalidate("U002");
+		cache.put("U003", user("U003", "300"));
+		cache.putLoaded("U001", user("U001", "100"), loadGeneration);
+
+		assertThat(cache.lookup("U001")).isEqualTo(user("U001", "100"));
+	}
+
+	@Test
+	void dropsLoadThatRacedWithWriteToSameUser() {
+		long loadGeneration = cache.generation();
+		cache.invalidate("U001");
+		cache.putLoaded("U001", user("U001", "100"), loadGeneration);
+		assertThat(cache.lookup("U001")).isNull();
+
+		loadGeneration = cache.generation();
+		cache.put("U001", user("U001", "50"));
+		cache.putLoaded("U001", user("U001", "100"), loadGeneration);
+		assertThat(cache.lookup("U001")).isEqualTo(user("U001", "50"));
+	}
+
+	@Test
+	void dropsLoadWhoseUserWasWrittenAndThenPushedOut() {
+		long loadGeneration = cache.generation();
+		cache.invalidate("U001");
+		cache.put("U002", user("U002", "200"));
+		cache.put("U003", user("U003", "300"));
+		cache.putLoaded("U001", user("U001", "100"), loadGeneration);
+
+		assertThat(cache.lookup("U001")).isNull();
+		assertThat(cache.stats()).containsEntry("evictions", 1L);
+	}
+
+	private Map<String, AttributeValue> user(String userId, String balance) {
+		return Map.of("user_id", AttributeValue.fromS(userId), "current_balance", AttributeValue.fromN(balance));
+	}
+}
@@ -0,0 +1,48 @@
+package com.wmn.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class UserOnboardingServiceTest {
+
+	private final UserOnboardingService service = new UserOnboardingService(mock(DynamoDbClient.class), mock(UserService.class),
+			mock(UsernameIndex.class), new ObjectMapper(), mock(Validator.class), 8, 500);
+
+	@Test
+	void readsCsvHeaderWhenOpened() throws Exception {
+		UserOnboardingService.Upload upload = service.open(body("\nUser_Name,current_balance\nalice,10\n"), true);
+
+		assertThat(upload.columns()).containsEntry("username", 0).containsEntry("currentbalance", 1);
+		assertThat(upload.reader().readLine()).isEqualTo("alice,10");
+	}
+
+	@Test
+	void rejectsCsvWithoutUsableHeaderWhenOpened() {
+		assertThatThrownBy(() -> service.open(body("name,balance\nalice,10\n"), true))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> service.open(body("\n\n"), true))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void leavesNdjsonUnread() throws Exception {
+		UserOnboardingService.Upload upload = service.open(body("{\"username\":\"alice\"}\n"), false);
+
+		assertThat(upload.columns()).isNull();
+		assertThat(upload.reader().readLine()).isEqualTo("{\"username\":\"alice\"}");
+	}
+
+	private InputStream body(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,70 @@
+package com.wmn.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+	@Test
+	void parsesPlainDecimals() {
+		assertThat(Money.parse("1234.50")).isEqualTo(123450);
+		assertThat(Money.parse("1234.5")).isEqualTo(123450);
+		assertThat(Money.parse("1234")).isEqualTo(123400);
+		assertThat(Money.parse("12.")).isEqualTo(1200);
+		assertThat(Money.parse("0.05")).isEqualTo(5);
+		assertThat(Money.parse("-12.34")).isEqualTo(-1234);
+		assertThat(Money.parse("+7.10")).isEqualTo(710);
+	}
+
+	@Test
+	void roundsLegacyValuesHalfEven() {
+		assertThat(Money.parse("99.99000000000001")).isEqualTo(9999);
+		assertThat(Money.parse("1.0E7")).isEqualTo(1_000_000_000L);
+		assertThat(Money.parse("0.125")).isEqualTo(12);
+		assertThat(Money.parse("0.135")).isEqualTo(14);
+		assertThat(Money.parse("-0.125")).isEqualTo(-12);
+	}
+
+	@Test
+	void fallsBackToLegacyParsingBeyondSixteenDigits() {
+		assertThat(Money.parse("9999999999999999")).isEqualTo(999_999_999_999_999_900L);
+		assertThat(Money.parse("12345678901234567")).isEqualTo(1_234_567_890_123_456_700L);
+	}
+
+	@Test
+	void rejectsAmountsThatOverflowMinorUnits() {
+		assertThatThrownBy(() -> Money.parse("99999999999999999999"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Money.times(Long.MAX_VALUE / 2, 3))
+				.isInstanceOf(ArithmeticException.class);
+		assertThatThrownBy(() -> Money.plus(Long.MAX_VALUE, 1))
+				.isInstanceOf(ArithmeticException.class);
+	}
+
+	@Test
+	void rejectsMalformedAmounts() {
+		for (String malformed : new String[] {null, "", ".", "-", "abc", "1.2.3", "12a"}) {
+			assertThatThrownBy(() -> Money.parse(malformed))
+					.as("parse(%s)", malformed)
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+	@Test
+	void formatsWithTwoFractionDigits() {
+		assertThat(Money.format(0)).isEqualTo("0.00");
+		assertThat(Money.format(5)).isEqualTo("0.05");
+		assertThat(Money.format(-5)).isEqualTo("-0.05");
+		assertThat(Money.format(123450)).isEqualTo("1234.50");
+		assertThat(Money.format(-123456)).isEqualTo("-1234.56");
+	}
+
+	@Test
+	void formatAndParseRoundTrip() {
+		for (long minor : new long[] {0, 1, 99, 100, 12_345_678, -4_321, 999_999_999_999_999_999L}) {
+			assertThat(Money.parse(Money.format(minor))).isEqualTo(minor);
+		}
+	}
+}
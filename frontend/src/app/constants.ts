@@ -10,5 +10,6 @@ export const API_ENDPOINTS = {
   download: '/download',
   start: '/start',
   status: '/status',
+  statusStream: '/status/stream',
   portfolio: '/portfolio',
 };
@@ -16,6 +16,8 @@ interface AnalyticsState {
   isReportReady: boolean;
 }
 
+const ACTIVE_STATES = ['STARTING', 'RUNNING', 'STOPPING', 'WAITING'];
+
 @Injectable({ providedIn: 'root' })
 export class AnalyticsStateService {
   private stateSubject = new BehaviorSubject<AnalyticsState>({
@@ -55,6 +57,19 @@ export class AnalyticsStateService {
   }
 
   private startPollingForStatus(jobId: string) {
+    if (typeof EventSource === 'undefined') {
+      this.pollForStatus(jobId);
+      return;
+    }
+
+    this.pollSubscription = this.analyticsService.streamAnalyticsStatus(jobId).subscribe({
+      next: (response) => this.handleStatus(response.status),
+      // stream unavailable or dropped before the run finished: fall back to polling
+      error: () => this.pollForStatus(jobId),
+    });
+  }
+
+  private pollForStatus(jobId: string) {
     this.pollSubscription = interval(30000)
       .pipe(
         switchMap(() =>
@@ -63,18 +78,19 @@ export class AnalyticsStateService {
             .pipe(catchError(() => of({ status: 'ERROR' })))
         )
       )
-      .subscribe((response) => {
-        const status = response.status;
-        if (status === 'RUNNING') return;
-
-        this.pollSubscription.unsubscribe();
-
-        if (status === 'SUCCEEDED') {
-          this.fetchDownloadUrl();
-        } else {
-          this.updateState({ isRunning: false, statusMessage: 'Analytics failed.' });
-        }
-      });
+      .subscribe((response) => this.handleStatus(response.status));
+  }
+
+  private handleStatus(status: string) {
+    if (ACTIVE_STATES.includes(status)) return;
+
+    this.pollSubscription.unsubscribe();
+
+    if (status === 'SUCCEEDED') {
+      this.fetchDownloadUrl();
+    } else {
+      this.updateState({ isRunning: false, statusMessage: 'Analytics failed.' });
+    }
   }
 
   private fetchDownloadUrl() {
@@ -21,6 +21,23 @@ export class AnalyticsService {
     );
   }
 
+  // server-sent state changes of the run; completes when the server closes the stream
+  streamAnalyticsStatus(jobId: string): Observable<{ jobId: string; status: string }> {
+    return new Observable((subscriber) => {
+      const source = new EventSource(
+        `${this.apiUrl + API_ENDPOINTS.analytics + API_ENDPOINTS.statusStream}?jobId=${jobId}`
+      );
+      source.addEventListener('status', (event) =>
+        subscriber.next(JSON.parse((event as MessageEvent).data))
+      );
+      source.onerror = () => {
+        source.close();
+        subscriber.error(new Error('Status stream closed'));
+      };
+      return () => source.close();
+    });
+  }
+
   getDownloadUrl(): Observable<Blob> {
     return this.http.get(`${this.apiUrl + API_ENDPOINTS.analytics + API_ENDPOINTS.download}`, {
       responseType: 'blob',
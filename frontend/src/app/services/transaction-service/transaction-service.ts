@@ -10,6 +10,11 @@ export interface Transaction {
   username: string;
 }
 
+export interface TransactionPage {
+  transactions: Transaction[];
+  nextCursor: string | null;
+}
+
 @Injectable({
   providedIn: 'root',
 })
@@ -43,13 +48,17 @@ export class TransactionService {
     return of({ success: true, data: tx });
   }
 
-  getTransactionHistory(userId:string): Observable<any>{
+  // One page of history, newest first; pass nextCursor back to fetch the following page
+  getTransactionPage(userId:string, cursor?:string, limit = 50): Observable<TransactionPage>{
     if(!this.useMock){
-       const params = new HttpParams().set('userId', userId);
-      return this.http.get<any>(`${this.baseUrl}/transaction/history`, { params })
+      let params = new HttpParams().set('userId', userId).set('limit', limit);
+      if (cursor) {
+        params = params.set('cursor', cursor);
+      }
+      return this.http.get<TransactionPage>(`${this.baseUrl}/transaction/history`, { params })
     }
 
     const list = this.mockTransactions.filter(t => t.username === userId || t.username === (userId));
-    return of(list);
+    return of({ transactions: list, nextCursor: null });
   }
 }
@@ -3,8 +3,8 @@ import { CommonModule } from '@angular/common';
 import { MatDialog, MatDialogModule } from '@angular/material/dialog';
 import { MatTableModule } from '@angular/material/table';
 import { MatSnackBar, MatSnackBarModule } from '@angular/material/snack-bar';
-import { BehaviorSubject, Observable } from 'rxjs';
-import { switchMap, finalize, map, shareReplay, startWith } from 'rxjs/operators';
+import { BehaviorSubject, Observable, Subject } from 'rxjs';
+import { switchMap, exhaustMap, finalize, map, scan, shareReplay, startWith, tap } from 'rxjs/operators';
 import { TransactionService } from '../../services/transaction-service/transaction-service';
 import { UserService, UserResponse } from '../../services/user-service/user';
 import { AuthService } from '../../services/auth-service/auth-service';
@@ -24,9 +24,13 @@ export class UserComponent implements OnInit {
   userId = '';
 
   private refresh$ = new BehaviorSubject<void>(undefined);
+  private loadMore$ = new Subject<void>();
 
   transactions$!: Observable<any[]>;
   loading$ = new BehaviorSubject<boolean>(false);
+  loadingMore$ = new BehaviorSubject<boolean>(false);
+  // cursor of the next history page; null once the last page is loaded
+  nextCursor: string | null = null;
 
   displayedColumns = [
     'transactionId',
@@ -63,14 +67,24 @@ export class UserComponent implements OnInit {
 
     if (!this.userName) return;
 
-    // Transactions observable
+    // Transactions observable: a refresh reloads the first page, load more appends the next one
     this.transactions$ = this.refresh$.pipe(
       switchMap(() => {
         this.loading$.next(true);
-        return this.transactionService.getTransactionHistory(this.userId).pipe(
-          finalize(() => this.loading$.next(false)),
+        this.nextCursor = null;
+        return this.loadMore$.pipe(
+          startWith(undefined),
+          exhaustMap((_, index) => {
+            const busy$ = index === 0 ? this.loading$ : this.loadingMore$;
+            busy$.next(true);
+            return this.transactionService.getTransactionPage(this.userId, this.nextCursor ?? undefined).pipe(
+              finalize(() => busy$.next(false))
+            );
+          }),
+          tap((page) => (this.nextCursor = page.nextCursor)),
+          scan((transactions: any[], page) => transactions.concat(page.transactions), []),
           map((transactions) =>
-            transactions.sort(
+            [...transactions].sort(
               (a: any, b: any) => new Date(b.timestamp).getTime() - new Date(a.timestamp).getTime()
             )
           )
@@ -88,6 +102,12 @@ export class UserComponent implements OnInit {
     this.refresh$.next();
   }
 
+  loadMore() {
+    if (this.nextCursor) {
+      this.loadMore$.next();
+    }
+  }
+
   openTransfer() {
     this.userService.getAllUsers().subscribe((users) => {
       const dialogRef = this.dialog.open(TransferDialogComponent, {
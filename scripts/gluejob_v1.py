@@ -6,10 +6,24 @@ from pyspark.context import SparkContext
 from awsglue.context import GlueContext
 from awsglue.job import Job
 from pyspark.sql import functions as F
-from datetime import datetime
+from datetime import datetime, timezone
+import json
 import boto3
 import os
 
+# Point the backend's report manifest at the new report, so it does not have to list the folder
+def publish_manifest(s3, bucket, key):
+    head = s3.head_object(Bucket=bucket, Key=key)
+    manifest = {
+        "key": key,
+        "eTag": head["ETag"],
+        "size": head["ContentLength"],
+        "lastModified": head["LastModified"].astimezone(timezone.utc).strftime("%Y-%m-%dT%H:%M:%SZ"),
+        "updatedAt": datetime.now(timezone.utc).strftime("%Y-%m-%dT%H:%M:%SZ"),
+    }
+    s3.put_object(Bucket=bucket, Key="analytics-manifest/latest.json",
+                  Body=json.dumps(manifest), ContentType="application/json")
+
 # Get job arguments
 args = getResolvedOptions(sys.argv, ['JOB_NAME'])
 sc = SparkContext()
@@ -78,5 +92,6 @@ if part_file:
     s3.delete_object(Bucket=bucket_name, Key=part_file)
     s3.delete_object(Bucket=bucket_name, Key=f"{folder_prefix}/temp_{timestamp}/_SUCCESS")
     print(f"File successfully written as {file_name} in {folder_prefix}/")
+    publish_manifest(s3, bucket_name, final_key)
 
 job.commit()
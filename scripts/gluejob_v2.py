@@ -6,13 +6,27 @@ from pyspark.context import SparkContext
 from awsglue.context import GlueContext
 from awsglue.job import Job
 from pyspark.sql import functions as F
-from datetime import datetime
+from datetime import datetime, timezone
+import json
 import boto3
 import pandas as pd
 from openpyxl import load_workbook
 from openpyxl.styles import Font
 import os
 
+# Point the backend's report manifest at the new report, so it does not have to list the folder
+def publish_manifest(s3, bucket, key):
+    head = s3.head_object(Bucket=bucket, Key=key)
+    manifest = {
+        "key": key,
+        "eTag": head["ETag"],
+        "size": head["ContentLength"],
+        "lastModified": head["LastModified"].astimezone(timezone.utc).strftime("%Y-%m-%dT%H:%M:%SZ"),
+        "updatedAt": datetime.now(timezone.utc).strftime("%Y-%m-%dT%H:%M:%SZ"),
+    }
+    s3.put_object(Bucket=bucket, Key="analytics-manifest/latest.json",
+                  Body=json.dumps(manifest), ContentType="application/json")
+
 # Get job arguments
 args = getResolvedOptions(sys.argv, ['JOB_NAME'])
 sc = SparkContext()
@@ -95,5 +109,6 @@ wb.save(local_path)
 s3 = boto3.client('s3')
 s3.upload_file(local_path, bucket_name, excel_key)
 print(f"Excel report uploaded to s3://{bucket_name}/{excel_key}")
+publish_manifest(s3, bucket_name, excel_key)
 
 job.commit()